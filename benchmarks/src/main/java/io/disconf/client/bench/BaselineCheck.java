@@ -0,0 +1,81 @@
+package io.disconf.client.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比 JMH json 结果和基线, 有回退时以非 0 退出; 差值同时超过容忍比例和两边误差 (scoreError) 之和才算回退:
+ * <pre>
+ *   java -cp target/benchmarks.jar io.disconf.client.bench.BaselineCheck baseline/jmh-baseline.json result.json [容忍百分比, 默认 20]
+ * </pre>
+ *
+ * @author houkangxi
+ */
+public class BaselineCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCheck <baseline.json> <result.json> [tolerancePercent]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.2;
+        Map<String, JSONObject> baseline = load(args[0]);
+        Map<String, JSONObject> result = load(args[1]);
+        int regressions = 0;
+        for (Map.Entry<String, JSONObject> entry : result.entrySet()) {
+            JSONObject base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("NEW   %-90s %12.3f%n", entry.getKey(), score(entry.getValue()));
+                continue;
+            }
+            double now = score(entry.getValue()), before = score(base);
+            // 吞吐量越大越好, 其他模式(耗时)越小越好
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().getString("mode"));
+            double delta = higherIsBetter ? before - now : now - before;
+            double error = scoreError(entry.getValue()) + scoreError(base);
+            // 误差范围内的差异是噪声
+            boolean regressed = delta > tolerance * before && delta > error;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-5s %-90s %12.3f -> %12.3f ± %.3f %s (%+.1f%%)%n", regressed ? "SLOW" : "OK", entry.getKey(),
+                    before, now, error, entry.getValue().getJSONObject("primaryMetric").getString("scoreUnit"),
+                    (now - before) / before * 100);
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed more than " + tolerance * 100 + "% and the score error");
+            System.exit(1);
+        }
+    }
+
+    private static double score(JSONObject run) {
+        return run.getJSONObject("primaryMetric").getDoubleValue("score");
+    }
+
+    // 只有一次迭代时 JMH 输出 NaN, 按 0 处理
+    private static double scoreError(JSONObject run) {
+        double error = run.getJSONObject("primaryMetric").getDoubleValue("scoreError");
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static Map<String, JSONObject> load(String path) throws IOException {
+        JSONArray runs = JSON.parseArray(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        Map<String, JSONObject> map = new LinkedHashMap<>();
+        for (int i = 0; i < runs.size(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            JSONObject params = run.getJSONObject("params");
+            String key = run.getString("benchmark") + (params == null ? "" : new TreeMap<>(params).toString());
+            map.put(key, run);
+        }
+        return map;
+    }
+}
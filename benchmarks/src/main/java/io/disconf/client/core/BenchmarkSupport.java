@@ -0,0 +1,39 @@
+package io.disconf.client.core;
+
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Properties;
+
+/**
+ * 基准测试公共工具
+ *
+ * @author houkangxi
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static BeanPropertyChangeHandler newHandler(DefaultListableBeanFactory beanFactory) {
+        BeanPropertyChangeHandler handler = new BeanPropertyChangeHandler();
+        handler.setEnvironment(new StandardEnvironment());
+        handler.postProcessBeanFactory(beanFactory);
+        return handler;
+    }
+
+    /**
+     * 生成 size 个 key, 形如 app.module{i%100}.key{i}
+     */
+    static Properties properties(int size) {
+        Properties properties = new Properties();
+        for (int i = 0; i < size; i++) {
+            properties.setProperty(key(i), "value-" + i);
+        }
+        return properties;
+    }
+
+    static String key(int i) {
+        return "app.module" + (i % 100) + ".key" + i;
+    }
+}
@@ -0,0 +1,47 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * changeBeanProperties 的 diff 开销: 1% 修改, 0.5% 新增, 0.5% 删除, 没有绑定的 bean
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChangeBeanPropertiesBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int keys;
+
+    BeanPropertyChangeHandler handler;
+    Properties oldProperties;
+    Properties newProperties;
+
+    @Setup
+    public void setup() {
+        handler = BenchmarkSupport.newHandler(new DefaultListableBeanFactory());
+        oldProperties = BenchmarkSupport.properties(keys);
+        newProperties = BenchmarkSupport.properties(keys);
+        for (int i = 0; i < keys; i += 100) {
+            newProperties.setProperty(BenchmarkSupport.key(i), "changed-" + i);
+        }
+        for (int i = 1; i < keys; i += 200) {
+            newProperties.remove(BenchmarkSupport.key(i));
+            newProperties.setProperty("app.added.key" + i, "added-" + i);
+        }
+    }
+
+    @Benchmark
+    public void diff() {
+        handler.changeBeanProperties(oldProperties, newProperties);
+    }
+}
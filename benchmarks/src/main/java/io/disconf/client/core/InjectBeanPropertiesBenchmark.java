@@ -0,0 +1,66 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.MethodParameter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向 N 个注入点重新注入配置的开销, 字段注入和 setter 注入各一半
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InjectBeanPropertiesBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int bindings;
+
+    BeanPropertyChangeHandler handler;
+    Properties properties;
+    Map<String, Set<DependencyDescriptor>> descriptors;
+
+    @Setup
+    public void setup() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("holder", new Holder());
+        handler = BenchmarkSupport.newHandler(beanFactory);
+        DependencyDescriptor field = new DependencyDescriptor(Holder.class.getField("timeout"), true);
+        DependencyDescriptor setter = new DependencyDescriptor(
+                new MethodParameter(Holder.class.getMethod("setTags", List.class), 0), true);
+        properties = new Properties();
+        descriptors = new HashMap<>();
+        for (int i = 0; i < bindings; i++) {
+            String key = "bench.key" + i;
+            if ((i & 1) == 0) {
+                properties.setProperty(key, String.valueOf(i));
+                descriptors.put(key, Collections.singleton(field));
+            } else {
+                properties.setProperty(key, "[\"a" + i + "\",\"b\",\"c\"]");
+                descriptors.put(key, Collections.singleton(setter));
+            }
+        }
+    }
+
+    @Benchmark
+    public void inject() {
+        handler.injectBeanProperties(properties, descriptors);
+    }
+
+    public static class Holder {
+        public volatile long timeout;
+        volatile List<String> tags;
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.JsonTypeConverter;
+import org.springframework.core.convert.TypeDescriptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonTypeConverter 对常用泛型类型的转换
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonTypeConverterBenchmark {
+
+    final JsonTypeConverter converter = new JsonTypeConverter();
+    TypeDescriptor listType, mapType, setType, arrayType, intType;
+    final String listJson = "[\"play\",\"war\",\"sport\",\"music\",\"movie\",\"book\",\"game\",\"code\"]";
+    final String mapJson = "{\"u1\":1,\"u2\":2,\"u3\":3,\"u4\":4,\"u5\":5,\"u6\":6,\"u7\":7,\"u8\":8}";
+    final String setJson = "[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16]";
+
+    @Setup
+    public void setup() throws Exception {
+        listType = new TypeDescriptor(Types.class.getField("list"));
+        mapType = new TypeDescriptor(Types.class.getField("map"));
+        setType = new TypeDescriptor(Types.class.getField("set"));
+        arrayType = new TypeDescriptor(Types.class.getField("array"));
+        intType = new TypeDescriptor(Types.class.getField("number"));
+    }
+
+    @Benchmark
+    public Object listOfString() {
+        return converter.convertIfNecessary(listJson, List.class, listType);
+    }
+
+    @Benchmark
+    public Object mapOfInteger() {
+        return converter.convertIfNecessary(mapJson, Map.class, mapType);
+    }
+
+    @Benchmark
+    public Object setOfLong() {
+        return converter.convertIfNecessary(setJson, Set.class, setType);
+    }
+
+    @Benchmark
+    public Object stringArray() {
+        return converter.convertIfNecessary(listJson, String[].class, arrayType);
+    }
+
+    @Benchmark
+    public Object plainInt() {
+        return converter.convertIfNecessary("8080", int.class, intType);
+    }
+
+    public static class Types {
+        public List<String> list;
+        public Map<String, Integer> map;
+        public Set<Long> set;
+        public String[] array;
+        public int number;
+    }
+}
@@ -0,0 +1,37 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.StringValueResolver;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通配符 key (app.module7.*) 解析成 json 的开销
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MapJsonBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int keys;
+
+    Properties properties;
+    final StringValueResolver resolver = s -> s;
+
+    @Setup
+    public void setup() {
+        properties = BenchmarkSupport.properties(keys);
+    }
+
+    @Benchmark
+    public String wildcard() {
+        return BeanPropertyChangeHandler.getMapJson(properties, "app.module7.*", resolver);
+    }
+}
@@ -0,0 +1,80 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地配置文件 (saveToLocal) 的读取和保存, 每次保存修改 10 个已有的 key (值交替变化, 保证每次都有修改)
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PropertiesConfigBenchmark {
+
+    @Param({"10000", "100000"})
+    int lines;
+
+    File file;
+    String[] changedKeys = new String[10];
+    PropertiesConfig reused;
+    int round;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("disconf-bench", ".properties");
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            for (int i = 0; i < lines; i++) {
+                if (i % 50 == 0) {
+                    writer.println("# section " + i);
+                }
+                writer.println(BenchmarkSupport.key(i) + "=value-" + i);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            changedKeys[i] = BenchmarkSupport.key(i * (lines / 10));
+        }
+        reused = new PropertiesConfig(file);
+    }
+
+    private Properties changes() {
+        Properties properties = new Properties();
+        String value = "changed-" + (round++ & 1);
+        for (String key : changedKeys) {
+            properties.setProperty(key, value);
+        }
+        return properties;
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public PropertiesConfig load() throws IOException {
+        return new PropertiesConfig(file);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        new PropertiesConfig(file).saveToFile(changes(), null);
+    }
+
+    /**
+     * 同一个实例反复保存 (saveToLocal 的用法), 不用每次重新解析文件
+     */
+    @Benchmark
+    public void saveReused() throws IOException {
+        reused.saveToFile(changes(), null);
+    }
+}
@@ -0,0 +1,52 @@
+package io.disconf.client.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下载的配置字节解析成快照: Properties.load + ConfigSnapshot.of 对比 PropertiesParser
+ *
+ * @author houkangxi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PropertiesParserBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int keys;
+
+    byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        StringWriter writer = new StringWriter();
+        BenchmarkSupport.properties(keys).store(writer, null);
+        data = writer.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ConfigSnapshot propertiesLoad() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return ConfigSnapshot.of(properties);
+    }
+
+    @Benchmark
+    public ConfigSnapshot parser() {
+        return PropertiesParser.parse(data);
+    }
+}
@@ -0,0 +1,293 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import io.disconf.client.metrics.UpdateTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步分发 {@link ConfigFileUpdateCallback}: 在有界线程池或虚拟线程上执行 (见 {@link ExecutorStrategy}), 不占用 ZK 事件线程。
+ * <ul>
+ * <li>每个回调一条串行通道, 同一个回调按顺序收到通知, 慢的回调不影响其他回调</li>
+ * <li>同一个文件还没处理的通知只保留一个 (回调读取的是文件的最新内容), 通道不会无限堆积</li>
+ * <li>超时的回调会被中断并计数; 不响应中断的回调所在的线程被放弃, 线程池补一个线程, 通道换一个线程继续处理后面的通知</li>
+ * <li>抛出的异常只记录, 不影响其他回调</li>
+ * <li>回调可以通过 {@link ConfigFileUpdateCallback#accept(String)} 只订阅部分配置项</li>
+ * </ul>
+ *
+ * @author houkangxi
+ */
+public class CallbackDispatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CallbackDispatcher.class);
+    // 最多为超时的回调补充的线程数, 超过后不再补充
+    private static final int MAX_ABANDONED = 16;
+    // 单次回调的状态: 超时后先中断, 再标记为放弃 (是否补充了线程)
+    private static final int RUNNING = 0, DONE = 1, TIMING_OUT = 2, ABANDONED = 3, ABANDONED_NO_THREAD = 4;
+    private final ExecutorService executor;
+    // 超时检查, 只做中断, 不执行回调
+    private final ScheduledExecutorService watchdog;
+    private final long timeoutMillis;
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+    private volatile List<Lane> lanes = Collections.emptyList();
+    // 被超时回调占住、已经补充过的线程数
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    /**
+     * @param threads       - 回调线程数
+     * @param timeoutMillis - 单次回调超时, 小于等于 0 不限制
+     */
+    public CallbackDispatcher(int threads, long timeoutMillis) {
+        this(ExecutorStrategy.get(), threads, timeoutMillis);
+    }
+
+    /**
+     * @param strategy      - 平台线程池或虚拟线程
+     * @param threads       - 平台线程数, 虚拟线程时每个回调通道一个线程
+     * @param timeoutMillis - 单次回调超时, 小于等于 0 不限制
+     */
+    public CallbackDispatcher(ExecutorStrategy strategy, int threads, long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        // 每个回调最多占一个排队位置, 队列长度足够
+        this.executor = strategy.newExecutor("disconf-callback", threads, 1024);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "disconf-callback-watchdog"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public void setCallbacks(Collection<ConfigFileUpdateCallback> callbacks) {
+        List<Lane> list = new ArrayList<>(callbacks.size());
+        for (ConfigFileUpdateCallback callback : callbacks) {
+            list.add(new Lane(callback));
+        }
+        lanes = list;
+    }
+
+    public boolean hasCallbacks() {
+        return !lanes.isEmpty();
+    }
+
+    /**
+     * 通知订阅了这个配置文件的回调, 立即返回
+     */
+    public void dispatch(File configFile) {
+        UpdateTrace trace = UpdateTrace.current();
+        String item = configFile.getName();
+        for (Lane lane : lanes) {
+            boolean accepted;
+            try {
+                accepted = lane.callback.accept(item);
+            } catch (Exception e) {
+                logger.warn("callback accept error: " + lane.name, e);
+                accepted = false;
+            }
+            if (accepted) {
+                lane.submit(configFile, trace);
+            }
+        }
+    }
+
+    /**
+     * 被超时回调占住的线程数
+     */
+    public int getAbandonedThreads() {
+        return abandoned.get();
+    }
+
+    // 平台线程池补一个线程, 虚拟线程不需要
+    private boolean growPool() {
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            return true;
+        }
+        if (abandoned.incrementAndGet() > MAX_ABANDONED) {
+            abandoned.decrementAndGet();
+            return false;
+        }
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        synchronized (pool) {
+            pool.setMaximumPoolSize(pool.getMaximumPoolSize() + 1);
+            pool.setCorePoolSize(pool.getCorePoolSize() + 1);
+        }
+        return true;
+    }
+
+    // 超时的回调终于返回, 收回补充的线程
+    private void shrinkPool() {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        abandoned.decrementAndGet();
+        synchronized (pool) {
+            pool.setCorePoolSize(pool.getCorePoolSize() - 1);
+            pool.setMaximumPoolSize(pool.getMaximumPoolSize() - 1);
+        }
+    }
+
+    /**
+     * 等待已经分发的通知全部处理完 (不包括超时后被放弃的回调), 用于关闭前和测试
+     *
+     * @return 超时前是否处理完
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                while (lane.running) {
+                    long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (wait <= 0) {
+                        return false;
+                    }
+                    lane.wait(wait);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    private class Lane {
+        final ConfigFileUpdateCallback callback;
+        final String name;
+        // 待处理的文件 -> 触发它的更新
+        final LinkedHashMap<File, UpdateTrace> pending = new LinkedHashMap<>();
+        boolean running;
+        // 当前处理这个通道的线程任务, 超时后换成新的
+        Worker worker;
+
+        Lane(ConfigFileUpdateCallback callback) {
+            this.callback = callback;
+            this.name = callback.getClass().getName();
+        }
+
+        synchronized void submit(File configFile, UpdateTrace trace) {
+            // 已经在排队的文件只更新对应的 trace
+            pending.remove(configFile);
+            pending.put(configFile, trace);
+            if (!running) {
+                start();
+            }
+        }
+
+        // 调用方持有锁
+        private void start() {
+            running = true;
+            worker = new Worker();
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                running = false;
+                worker = null;
+                metrics.increment(DisconfMetrics.CALLBACK_REJECTED, name, 1);
+                logger.error("callback rejected: " + name + ", " + pending.keySet(), e);
+                pending.clear();
+                notifyAll();
+            }
+        }
+
+        // 回调超时: 放弃当前线程, 有排队的通知时换一个线程继续
+        synchronized void abandon(Worker timedOut, boolean replaced) {
+            if (worker != timedOut) {
+                return;
+            }
+            worker = null;
+            running = false;
+            if (!replaced) {
+                logger.warn("too many stuck callbacks, no more threads added: {}", name);
+            }
+            if (!pending.isEmpty()) {
+                start();
+            } else {
+                notifyAll();
+            }
+        }
+
+        private class Worker implements Runnable {
+            @Override
+            public void run() {
+                while (true) {
+                    File configFile;
+                    UpdateTrace trace;
+                    synchronized (Lane.this) {
+                        if (worker != this) {
+                            return;
+                        }
+                        Iterator<Map.Entry<File, UpdateTrace>> it = pending.entrySet().iterator();
+                        if (!it.hasNext()) {
+                            running = false;
+                            worker = null;
+                            Lane.this.notifyAll();
+                            return;
+                        }
+                        Map.Entry<File, UpdateTrace> next = it.next();
+                        it.remove();
+                        configFile = next.getKey();
+                        trace = next.getValue();
+                    }
+                    if (!invoke(configFile, trace)) {
+                        // 超时后通道已经交给了别的线程
+                        return;
+                    }
+                }
+            }
+
+            // @return 是否在超时前返回
+            private boolean invoke(File configFile, UpdateTrace trace) {
+                final Thread thread = Thread.currentThread();
+                final AtomicInteger state = new AtomicInteger(RUNNING);
+                ScheduledFuture<?> timeout = timeoutMillis <= 0 ? null : watchdog.schedule(() -> {
+                    if (!state.compareAndSet(RUNNING, TIMING_OUT)) {
+                        return;
+                    }
+                    metrics.increment(DisconfMetrics.CALLBACK_TIMEOUT, name, 1);
+                    logger.error("callback timeout ({}ms), interrupting: {}, {}", new Object[]{timeoutMillis, name, configFile});
+                    thread.interrupt();
+                    boolean replaced = growPool();
+                    state.set(replaced ? ABANDONED : ABANDONED_NO_THREAD);
+                    abandon(this, replaced);
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+                long start = System.nanoTime();
+                try {
+                    callback.onUpdate(configFile);
+                } catch (Throwable e) {
+                    metrics.increment(DisconfMetrics.CALLBACK_ERROR, name, 1);
+                    logger.error("callbackError: " + name + ", " + configFile, e);
+                    if (trace != null) {
+                        trace.fail("callbackError: " + name + ": " + e);
+                    }
+                }
+                boolean inTime = state.compareAndSet(RUNNING, DONE);
+                if (inTime) {
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                } else {
+                    // 等超时处理把中断发完, 再清掉标记, 不会带到这个线程后面执行的任务
+                    while (state.get() == TIMING_OUT) {
+                        Thread.yield();
+                    }
+                    if (state.get() == ABANDONED && executor instanceof ThreadPoolExecutor) {
+                        shrinkPool();
+                    }
+                }
+                Thread.interrupted();
+                metrics.recordSince(DisconfMetrics.CALLBACK, name, start);
+                if (trace != null) {
+                    trace.stage(UpdateTrace.CALLBACK, name, start);
+                }
+                return inTime;
+            }
+        }
+    }
+}
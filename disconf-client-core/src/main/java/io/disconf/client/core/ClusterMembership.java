@@ -0,0 +1,203 @@
+package io.disconf.client.core;
+
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群成员视图: 由 child watch 驱动刷新的内存快照, 读取时不访问 ZK。
+ * 读取失败时 (此时没有注册上 watch) 按退避时间重试; 一次都没有加载成功时, 读取快照会直接访问 ZK。
+ *
+ * @author houkangxi
+ */
+public class ClusterMembership implements Watcher {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+    private final ResilientActiveKeyValueStore store;
+    private final String path;
+    // 所有实例共用的重试线程
+    private static final ScheduledExecutorService RETRY = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "disconf-membership-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int MAX_RETRY_SECONDS = 60;
+    private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private int retries;
+    private ScheduledFuture<?> retry;
+    private volatile boolean closed;
+
+    public ClusterMembership(ResilientActiveKeyValueStore store, String path) {
+        this.store = store;
+        this.path = path;
+    }
+
+    /**
+     * 当前成员快照, O(1); 还没有加载成功过时直接读取一次
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current.cversion < 0 && !closed) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    public void addListener(MembershipListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MembershipListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void process(WatchedEvent event) {
+        if (event.getType() == Event.EventType.NodeChildrenChanged) {
+            refresh();
+        }
+    }
+
+    /**
+     * 重新读取子节点并注册 child watch; 会话过期重连后也需要调用一次。
+     * 并发刷新时按子节点版本 (cversion) 保留较新的结果
+     */
+    public void refresh() {
+        List<String> children;
+        Stat stat = new Stat();
+        try {
+            children = readChildren(stat);
+        } catch (Exception e) {
+            logger.error("获取集群成员失败: " + path, e);
+            scheduleRetry();
+            return;
+        }
+        Set<String> joined, left;
+        Snapshot current;
+        synchronized (this) {
+            retries = 0;
+            Snapshot prev = snapshot;
+            if (stat.getCversion() <= prev.cversion) {
+                // 比当前快照旧(或相同)的读取结果
+                return;
+            }
+            Set<String> members = new TreeSet<>(children);
+            if (members.equals(prev.members)) {
+                snapshot = new Snapshot(prev.version, members, stat.getCversion());
+                return;
+            }
+            joined = new TreeSet<>(members);
+            joined.removeAll(prev.members);
+            left = new TreeSet<>(prev.members);
+            left.removeAll(members);
+            current = new Snapshot(prev.version + 1, members, stat.getCversion());
+            snapshot = current;
+        }
+        logger.info("集群成员变更: version={}, joined={}, left={}", new Object[]{current.version, joined, left});
+        joined = Collections.unmodifiableSet(joined);
+        left = Collections.unmodifiableSet(left);
+        for (MembershipListener listener : listeners) {
+            try {
+                listener.onMembershipChange(current, joined, left);
+            } catch (Exception e) {
+                logger.warn("MembershipListener error: " + listener, e);
+            }
+        }
+    }
+
+    // 读取子节点并注册 child watch
+    List<String> readChildren(Stat stat) throws Exception {
+        return store.getZk().getChildren(path, this, stat);
+    }
+
+    // 读取失败时没有 watch, 不重试的话要等到会话过期才会再刷新
+    private synchronized void scheduleRetry() {
+        if (closed || (retry != null && !retry.isDone())) {
+            return;
+        }
+        retry = RETRY.schedule(this::refresh, retryDelay(retries++), TimeUnit.SECONDS);
+    }
+
+    // 第 retries 次重试前等待的秒数, 指数退避
+    static int retryDelay(int retries) {
+        return Math.min(ResilientActiveKeyValueStore.RETRY_PERIOD_SECONDS << Math.min(retries, 5), MAX_RETRY_SECONDS);
+    }
+
+    /**
+     * 停止重试
+     */
+    public synchronized void close() {
+        closed = true;
+        if (retry != null) {
+            retry.cancel(false);
+        }
+    }
+
+    // 子节点名为 host_uuid, 兼容没有 '_' 分隔的旧格式(host + 36位uuid)
+    static String parseHost(String node) {
+        int i = node.indexOf('_');
+        if (i >= 0) {
+            return node.substring(0, i);
+        }
+        return node.length() > 36 ? node.substring(0, node.length() - 36) : node;
+    }
+
+    /**
+     * 不可变的成员快照
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Collections.emptySet(), -1);
+        private final long version;
+        private final Set<String> members;
+        private final String[] hosts;
+        // 读取时父节点的 cversion, 没有加载过为 -1
+        private final int cversion;
+
+        Snapshot(long version, Set<String> members, int cversion) {
+            this.version = version;
+            this.members = Collections.unmodifiableSet(members);
+            this.cversion = cversion;
+            this.hosts = members.stream().map(ClusterMembership::parseHost).toArray(String[]::new);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 所有成员节点名
+         */
+        public Set<String> getMembers() {
+            return members;
+        }
+
+        /**
+         * 所有成员的 host, 与 members 一一对应
+         */
+        public String[] getHosts() {
+            return hosts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{version=" + version + ", members=" + members + '}';
+        }
+    }
+
+    /**
+     * 成员加入/离开回调
+     */
+    public interface MembershipListener {
+        void onMembershipChange(Snapshot snapshot, Set<String> joined, Set<String> left);
+    }
+}
@@ -0,0 +1,164 @@
+package io.disconf.client.core;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 配置内容的压缩格式: 下载时的 Content-Encoding 协商, 以及写入 ZK 节点的压缩数据。
+ * zstd 需要 classpath 里有 com.github.luben:zstd-jni (可选依赖), 没有时不可用。
+ * <p>
+ * ZK 节点里的压缩数据以 4 字节格式标记开头: 0x00 'D' 'Z' id; 没有标记的按原始内容处理,
+ * 0x00 开头的内容不可能是 JSON/properties 文本, 所以不会误判。
+ *
+ * @author houkangxi
+ */
+public enum Compression {
+    NONE("identity", 0),
+    GZIP("gzip", 1),
+    ZSTD("zstd", 2);
+
+    private static final byte[] MARKER = {0, 'D', 'Z'};
+    private static final boolean ZSTD_AVAILABLE = isClassPresent("com.github.luben.zstd.ZstdInputStream");
+
+    private final String encoding;
+    private final int id;
+
+    Compression(String encoding, int id) {
+        this.encoding = encoding;
+        this.id = id;
+    }
+
+    /**
+     * HTTP Content-Encoding 的取值
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public boolean isAvailable() {
+        return this != ZSTD || ZSTD_AVAILABLE;
+    }
+
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, 8192);
+            case ZSTD:
+                return ZstdCodec.decompress(in);
+            default:
+                return in;
+        }
+    }
+
+    public byte[] compress(byte[] data) {
+        if (this == NONE) {
+            return data;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (OutputStream stream = this == GZIP ? new GZIPOutputStream(out) : ZstdCodec.compress(out)) {
+            stream.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static Compression forName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return NONE;
+        }
+        for (Compression c : values()) {
+            if (c.encoding.equalsIgnoreCase(name.trim()) || c.name().equalsIgnoreCase(name.trim())) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression: " + name);
+    }
+
+    /**
+     * 按响应的 Content-Encoding 取解压方式, null 表示没压缩
+     */
+    public static Compression forEncoding(String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return NONE;
+        }
+        for (Compression c : values()) {
+            if (c.encoding.equalsIgnoreCase(contentEncoding.trim())) {
+                return c;
+            }
+        }
+        throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+    }
+
+    /**
+     * 请求头 Accept-Encoding 的取值, 可用的格式按压缩率从高到低
+     */
+    public static String acceptEncoding() {
+        return ZSTD_AVAILABLE ? "zstd, gzip" : "gzip";
+    }
+
+    /**
+     * 压缩后加上格式标记, 用于写入 ZK
+     */
+    public byte[] wrap(byte[] data) {
+        if (this == NONE) {
+            return data;
+        }
+        byte[] compressed = compress(data);
+        byte[] payload = new byte[MARKER.length + 1 + compressed.length];
+        System.arraycopy(MARKER, 0, payload, 0, MARKER.length);
+        payload[MARKER.length] = (byte) id;
+        System.arraycopy(compressed, 0, payload, MARKER.length + 1, compressed.length);
+        return payload;
+    }
+
+    /**
+     * 读取 ZK 节点数据: 有格式标记的解压, 没有的原样返回
+     */
+    public static byte[] unwrap(byte[] payload) throws IOException {
+        if (payload == null || payload.length <= MARKER.length || payload[0] != MARKER[0]
+                || payload[1] != MARKER[1] || payload[2] != MARKER[2]) {
+            return payload;
+        }
+        Compression compression = null;
+        for (Compression c : values()) {
+            if (c.id == payload[MARKER.length]) {
+                compression = c;
+            }
+        }
+        if (compression == null || !compression.isAvailable()) {
+            throw new IOException("Unsupported payload format: " + payload[MARKER.length]);
+        }
+        int offset = MARKER.length + 1;
+        try (InputStream in = compression.decompress(new ByteArrayInputStream(payload, offset, payload.length - offset))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static boolean isClassPresent(String name) {
+        try {
+            Class.forName(name, false, Compression.class.getClassLoader());
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    // 单独的类, 没有 zstd-jni 时不会被加载
+    private static class ZstdCodec {
+        static InputStream decompress(InputStream in) throws IOException {
+            return new com.github.luben.zstd.ZstdInputStream(in);
+        }
+
+        static OutputStream compress(OutputStream out) throws IOException {
+            return new com.github.luben.zstd.ZstdOutputStream(out);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.disconf.client.core;
+
+/**
+ * 单个 key 的变更
+ *
+ * @author houkangxi
+ */
+public final class ConfigChange {
+    public enum Type {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    private final String key;
+    private final String oldValue;
+    private final String newValue;
+    private final Type type;
+
+    ConfigChange(String key, String oldValue, String newValue, Type type) {
+        this.key = key;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.type = type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 新增时为 null
+     */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * 删除时为 null
+     */
+    public String getNewValue() {
+        return newValue;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case ADDED:
+                return "+" + key;
+            case REMOVED:
+                return "-" + key;
+            default:
+                return "~" + key;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.disconf.client.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次配置变更事件, 不可变, 同一个事件会共享给订阅范围相同的所有监听器。
+ *
+ * @author houkangxi
+ */
+public final class ConfigChangeEvent {
+    private final String item;
+    private final long version;
+    private final ConfigChangeSet changes;
+    private final List<ConfigChange> added;
+    private final List<ConfigChange> removed;
+    private final List<ConfigChange> modified;
+
+    public ConfigChangeEvent(String item, long version, ConfigChangeSet changes) {
+        this.item = item;
+        this.version = version;
+        this.changes = changes;
+        this.added = Collections.unmodifiableList(changes.getAdded());
+        this.removed = Collections.unmodifiableList(changes.getRemoved());
+        this.modified = Collections.unmodifiableList(changes.getModified());
+    }
+
+    /**
+     * 触发变更的配置项(配置层名, 如 ZK 节点或 local), 一次刷新多个配置项时用逗号分隔
+     */
+    public String getItem() {
+        return item;
+    }
+
+    /**
+     * 变更后的配置快照版本, 见 {@link LayeredProperties#getVersion()}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 合并后的配置的变更, 按 key 排序, 包括因为 ${...} 引用而间接变化的 key
+     */
+    public ConfigChangeSet getChanges() {
+        return changes;
+    }
+
+    public List<ConfigChange> getAdded() {
+        return added;
+    }
+
+    public List<ConfigChange> getRemoved() {
+        return removed;
+    }
+
+    public List<ConfigChange> getModified() {
+        return modified;
+    }
+
+    /**
+     * 某个 key 的变更, 没有变更返回 null
+     */
+    public ConfigChange get(String key) {
+        return changes.get(key);
+    }
+
+    public boolean isChanged(String key) {
+        return changes.get(key) != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigChangeEvent{item='" + item + "', version=" + version + ", changes=" + changes + '}';
+    }
+}
@@ -0,0 +1,29 @@
+package io.disconf.client.core;
+
+/**
+ * 配置变更的应用方, 远程和本地配置的变更算出 diff 后交给它, 比如 Spring 集成里把变更重新注入到 bean。
+ * 不依赖 Spring 的进程可以直接用 lambda 实现。
+ *
+ * @author houkangxi
+ */
+public interface ConfigChangeHandler {
+
+    /**
+     * 什么都不做, 只需要监听器和回调时使用
+     */
+    ConfigChangeHandler NONE = (changes, layeredProperties) -> changes;
+
+    /**
+     * 准备阶段, 在配置切换之前调用: 检查新配置能否应用 (类型转换、校验等),
+     * 抛出异常则放弃本次更新, 文件和当前配置都不变
+     */
+    default void prepare(LayeredProperties.Staged staged) throws Exception {
+    }
+
+    /**
+     * 应用一批变更, 此时 layeredProperties 已经是新的配置
+     *
+     * @return 实际生效的变更, 可以包含因为引用而间接变化的 key, 会通知给 {@link ConfigChangeListener}
+     */
+    ConfigChangeSet applyChanges(ConfigChangeSet changes, LayeredProperties layeredProperties);
+}
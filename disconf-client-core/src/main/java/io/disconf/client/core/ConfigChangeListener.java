@@ -0,0 +1,27 @@
+package io.disconf.client.core;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 配置变更监听接口, 收到的是 key 级别的变更, 不需要再读取和解析配置文件。
+ * Spring 容器里实现这个接口的 bean 会自动注册。
+ *
+ * @author houkangxi
+ */
+public interface ConfigChangeListener {
+
+    /**
+     * 配置变更, 在 bean 重新注入之后调用; 只包含订阅的 key, 没有相关变更时不调用
+     *
+     * @param event - 变更事件, 不可变
+     */
+    void onChange(ConfigChangeEvent event);
+
+    /**
+     * 订阅的 key 前缀, 空表示全部 key
+     */
+    default Collection<String> getKeyPrefixes() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,109 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import io.disconf.client.metrics.UpdateTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * 把配置变更分发给 {@link ConfigChangeListener}: 变更只算一次, 订阅前缀相同的监听器共享同一个过滤后的事件。
+ * 在更新线程上按注册顺序调用, 监听器的异常不影响其他监听器。
+ *
+ * @author houkangxi
+ */
+public class ConfigChangeNotifier {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigChangeNotifier.class);
+
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+    // 订阅前缀 -> 监听器, 写时复制
+    private volatile Map<Set<String>, List<ConfigChangeListener>> groups = Collections.emptyMap();
+    private ConfigStream stream;
+
+    /**
+     * 注册监听器, 已经注册过的忽略
+     */
+    public synchronized void addListener(ConfigChangeListener listener) {
+        for (List<ConfigChangeListener> listeners : groups.values()) {
+            if (listeners.contains(listener)) {
+                return;
+            }
+        }
+        Collection<String> prefixes = listener.getKeyPrefixes();
+        Set<String> key = prefixes == null ? Collections.emptySet() : new TreeSet<>(prefixes);
+        Map<Set<String>, List<ConfigChangeListener>> copy = new LinkedHashMap<>(groups);
+        List<ConfigChangeListener> listeners = new ArrayList<>(copy.getOrDefault(key, Collections.emptyList()));
+        listeners.add(listener);
+        copy.put(key, Collections.unmodifiableList(listeners));
+        groups = copy;
+    }
+
+    public synchronized void removeListener(ConfigChangeListener listener) {
+        Map<Set<String>, List<ConfigChangeListener>> copy = new LinkedHashMap<>();
+        for (Map.Entry<Set<String>, List<ConfigChangeListener>> e : groups.entrySet()) {
+            List<ConfigChangeListener> listeners = new ArrayList<>(e.getValue());
+            listeners.remove(listener);
+            if (!listeners.isEmpty()) {
+                copy.put(e.getKey(), Collections.unmodifiableList(listeners));
+            }
+        }
+        groups = copy;
+    }
+
+    /**
+     * 响应式的变更流, 第一次调用时创建并注册为监听器
+     */
+    public synchronized ConfigStream getStream() {
+        if (stream == null) {
+            stream = new ConfigStream();
+            addListener(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * 结束变更流, 订阅者收到 onComplete; 容器关闭时调用
+     */
+    public synchronized void close() {
+        if (stream != null) {
+            removeListener(stream);
+            stream.close();
+        }
+    }
+
+    public boolean hasListeners() {
+        return !groups.isEmpty();
+    }
+
+    /**
+     * @param item    - 触发变更的配置项
+     * @param version - 变更后的快照版本
+     * @param changes - 合并后的变更
+     */
+    public void fire(String item, long version, ConfigChangeSet changes) {
+        Map<Set<String>, List<ConfigChangeListener>> groups = this.groups;
+        if (changes.isEmpty() || groups.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Set<String>, List<ConfigChangeListener>> group : groups.entrySet()) {
+            ConfigChangeSet filtered = changes.withPrefixes(group.getKey());
+            if (filtered.isEmpty()) {
+                continue;
+            }
+            ConfigChangeEvent event = new ConfigChangeEvent(item, version, filtered);
+            for (ConfigChangeListener listener : group.getValue()) {
+                String name = listener.getClass().getName();
+                long start = System.nanoTime();
+                try {
+                    listener.onChange(event);
+                } catch (Exception e) {
+                    metrics.increment(DisconfMetrics.LISTENER_ERROR, name, 1);
+                    logger.error("listenerError: " + name + ", " + event, e);
+                }
+                metrics.recordSince(DisconfMetrics.LISTENER, name, start);
+                UpdateTrace.mark(UpdateTrace.LISTENER, name, start);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package io.disconf.client.core;
+
+import java.util.*;
+
+/**
+ * 一次 diff 的结果, 按 key 排序, 不可变。
+ *
+ * @author houkangxi
+ */
+public final class ConfigChangeSet {
+    public static final ConfigChangeSet EMPTY = new ConfigChangeSet(Collections.emptyList());
+
+    private final List<ConfigChange> changes;
+
+    ConfigChangeSet(List<ConfigChange> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * 所有变更, 按 key 排序
+     */
+    public List<ConfigChange> getChanges() {
+        return changes;
+    }
+
+    public List<ConfigChange> getAdded() {
+        return filter(ConfigChange.Type.ADDED);
+    }
+
+    public List<ConfigChange> getRemoved() {
+        return filter(ConfigChange.Type.REMOVED);
+    }
+
+    public List<ConfigChange> getModified() {
+        return filter(ConfigChange.Type.MODIFIED);
+    }
+
+    /**
+     * 变更的 key, 有序
+     */
+    public List<String> keys() {
+        String[] keys = new String[changes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = changes.get(i).getKey();
+        }
+        return Arrays.asList(keys);
+    }
+
+    /**
+     * 某个 key 的变更, 没有变更返回 null
+     */
+    public ConfigChange get(String key) {
+        int low = 0, high = changes.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            ConfigChange change = changes.get(mid);
+            int cmp = change.getKey().compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return change;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 只保留 key 以其中某个前缀开头的变更, 前缀为空时返回自身
+     */
+    public ConfigChangeSet withPrefixes(Collection<String> prefixes) {
+        if (prefixes.isEmpty() || changes.isEmpty()) {
+            return this;
+        }
+        // 前缀排序, 去掉被更短前缀包含的, 每个前缀对应一段连续且互不重叠的 key
+        List<String> sorted = new ArrayList<>(new TreeSet<>(prefixes));
+        List<ConfigChange> list = new ArrayList<>();
+        String last = null;
+        for (String prefix : sorted) {
+            if (last != null && prefix.startsWith(last)) {
+                continue;
+            }
+            last = prefix;
+            for (int i = lowerBound(prefix); i < changes.size() && changes.get(i).getKey().startsWith(prefix); i++) {
+                list.add(changes.get(i));
+            }
+        }
+        return list.size() == changes.size() ? this : new ConfigChangeSet(list);
+    }
+
+    private int lowerBound(String key) {
+        int low = 0, high = changes.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (changes.get(mid).getKey().compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 先后两次变更合并为一次: 旧值取前一次的, 新值取后一次的, 合并后没有变化的 key 去掉
+     */
+    ConfigChangeSet then(ConfigChangeSet later) {
+        if (isEmpty()) {
+            return later;
+        }
+        if (later.isEmpty()) {
+            return this;
+        }
+        List<ConfigChange> list = new ArrayList<>(changes.size() + later.changes.size());
+        int i = 0, j = 0;
+        while (i < changes.size() || j < later.changes.size()) {
+            ConfigChange a = i < changes.size() ? changes.get(i) : null;
+            ConfigChange b = j < later.changes.size() ? later.changes.get(j) : null;
+            int cmp = a == null ? 1 : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (cmp < 0) {
+                list.add(a);
+                i++;
+            } else if (cmp > 0) {
+                list.add(b);
+                j++;
+            } else {
+                String oldValue = a.getOldValue(), newValue = b.getNewValue();
+                if (oldValue == null ? newValue != null : !oldValue.equals(newValue) || isIndirect(a) || isIndirect(b)) {
+                    ConfigChange.Type type = oldValue == null ? ConfigChange.Type.ADDED
+                            : newValue == null ? ConfigChange.Type.REMOVED : ConfigChange.Type.MODIFIED;
+                    list.add(new ConfigChange(a.getKey(), oldValue, newValue, type));
+                }
+                i++;
+                j++;
+            }
+        }
+        return new ConfigChangeSet(list);
+    }
+
+    // 值没变但 ${...} 解析结果变了的修改, 合并后无法确定是否变回原值, 保留
+    private static boolean isIndirect(ConfigChange change) {
+        return change.getType() == ConfigChange.Type.MODIFIED && change.getOldValue().equals(change.getNewValue());
+    }
+
+    /**
+     * 合并另一批变更(key 不重复), 返回新的有序结果
+     */
+    ConfigChangeSet merge(List<ConfigChange> more) {
+        if (more.isEmpty()) {
+            return this;
+        }
+        List<ConfigChange> list = new ArrayList<>(changes.size() + more.size());
+        list.addAll(changes);
+        list.addAll(more);
+        list.sort(Comparator.comparing(ConfigChange::getKey));
+        return new ConfigChangeSet(list);
+    }
+
+    private List<ConfigChange> filter(ConfigChange.Type type) {
+        List<ConfigChange> list = new ArrayList<>();
+        for (ConfigChange change : changes) {
+            if (change.getType() == type) {
+                list.add(change);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+}
@@ -0,0 +1,338 @@
+package io.disconf.client.core;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 增量更新的补丁格式, 客户端应用补丁, 服务端(及测试用的替身)生成补丁。
+ * <pre>
+ * 请求:  /api/config/file?...&amp;key=item&amp;baseVersion=客户端当前版本
+ * 响应:  X-Disconf-Patch: properties | binary, X-Disconf-Version: 应用补丁后的版本, body 为补丁;
+ *        没有 X-Disconf-Patch 头时 body 是全量内容(服务端不支持增量或者找不到 baseVersion)
+ * </pre>
+ * 版本号: properties 配置项为 {@link ConfigSnapshot#digest()}, 其他文件为内容的 MD5。
+ * <p>
+ * properties 补丁按 key 描述变更, 每行一条: <code>+key=value</code> 新增或修改, <code>-key</code> 删除,
+ * key/value 按 properties 格式转义, UTF-8 编码。应用时只替换原文件中对应 key 的行, 其余行(注释、顺序)保持不变。
+ * <p>
+ * 二进制补丁: "DDLT" 后接若干指令, 1 offset length 表示从原文件复制, 2 length bytes 表示插入新内容,
+ * 整数用 varint 编码。
+ *
+ * @author houkangxi
+ */
+public final class ConfigDelta {
+    public static final String BASE_VERSION_PARAM = "baseVersion";
+    public static final String PATCH_HEADER = "X-Disconf-Patch";
+    public static final String VERSION_HEADER = "X-Disconf-Version";
+    public static final String PROPERTIES = "properties";
+    public static final String BINARY = "binary";
+
+    private static final byte[] MAGIC = {'D', 'D', 'L', 'T'};
+    private static final int OP_COPY = 1;
+    private static final int OP_ADD = 2;
+    // 二进制 diff 的匹配块大小
+    private static final int BLOCK = 32;
+    private static final long PRIME = 1000003L;
+
+    private ConfigDelta() {
+    }
+
+    /**
+     * 配置项内容的版本号
+     */
+    public static String version(String node, byte[] data) {
+        return isProperties(node) ? PropertiesParser.parse(data).digest() : hex(md5().digest(data));
+    }
+
+    /**
+     * 生成 base 到 target 的补丁, 补丁不比全量小时返回 null
+     */
+    public static byte[] createPatch(String node, byte[] base, byte[] target) {
+        byte[] patch = isProperties(node) ?
+                createPropertiesPatch(PropertiesParser.parse(base), PropertiesParser.parse(target)) : createBinaryPatch(base, target);
+        return patch.length < target.length ? patch : null;
+    }
+
+    // 不依赖 ZookeeperWatcher, 服务端只需要这个类和 PropertiesParser
+    private static boolean isProperties(String node) {
+        return node.endsWith(".properties");
+    }
+
+    public static String patchType(String node) {
+        return isProperties(node) ? PROPERTIES : BINARY;
+    }
+
+    /**
+     * 按补丁类型应用补丁
+     */
+    public static byte[] apply(String patchType, byte[] base, byte[] patch) {
+        if (PROPERTIES.equals(patchType)) {
+            return applyPropertiesPatch(base, patch);
+        }
+        if (BINARY.equals(patchType)) {
+            return applyBinaryPatch(base, patch);
+        }
+        throw new IllegalArgumentException("Unknown patch type: " + patchType);
+    }
+
+    public static byte[] createPropertiesPatch(ConfigSnapshot base, ConfigSnapshot target) {
+        StringBuilder sb = new StringBuilder();
+        for (ConfigChange change : PropertiesDiff.diff(base, target).getChanges()) {
+            String key = PropertiesConfig.saveConvert(change.getKey(), true, false);
+            if (change.getType() == ConfigChange.Type.REMOVED) {
+                sb.append('-').append(key).append('\n');
+            } else {
+                sb.append('+').append(key).append('=')
+                        .append(PropertiesConfig.saveConvert(change.getNewValue(), false, false)).append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] applyPropertiesPatch(byte[] base, byte[] patch) {
+        return applyPropertiesPatch(base, PropertiesParser.parse(base), patch);
+    }
+
+    /**
+     * @param baseSnapshot - base 解析后的快照, 需要其中的行号
+     */
+    public static byte[] applyPropertiesPatch(byte[] base, ConfigSnapshot baseSnapshot, byte[] patch) {
+        // key -> 新的整行(已转义), null 表示删除
+        Map<String, String> updates = new LinkedHashMap<>();
+        String text = new String(patch, StandardCharsets.UTF_8);
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end);
+            start = end + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+            ConfigSnapshot entry = PropertiesParser.parse(line.substring(1).getBytes(StandardCharsets.UTF_8));
+            if (entry.size() != 1) {
+                throw new IllegalArgumentException("Malformed patch line: " + line);
+            }
+            if (line.charAt(0) == '+') {
+                updates.put(entry.key(0), line.substring(1));
+            } else if (line.charAt(0) == '-') {
+                updates.put(entry.key(0), null);
+            } else {
+                throw new IllegalArgumentException("Malformed patch line: " + line);
+            }
+        }
+        // 原文件中要替换/删除的 key 所在的行
+        Map<Integer, String> targetLines = new HashMap<>();
+        for (String key : updates.keySet()) {
+            int line = baseSnapshot.lineOf(key);
+            if (line > 0) {
+                targetLines.put(line, key);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(base.length + patch.length);
+        int lineNo = 0, pos = 0;
+        boolean continuation = false, skipping = false, lineStart = true;
+        while (pos < base.length) {
+            lineNo++;
+            int end = pos;
+            while (end < base.length && base[end] != '\n' && base[end] != '\r') {
+                end++;
+            }
+            int next = end;
+            if (next < base.length && base[next] == '\r') {
+                next++;
+            }
+            if (next < base.length && base[next] == '\n') {
+                next++;
+            }
+            if (!continuation) {
+                String key = targetLines.get(lineNo);
+                skipping = key != null;
+                if (skipping) {
+                    String line = updates.remove(key);
+                    if (line != null) {
+                        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                        out.write(bytes, 0, bytes.length);
+                        if (next > end) {
+                            out.write(base, end, next - end);
+                        } else {
+                            out.write('\n');
+                        }
+                        lineStart = true;
+                    }
+                }
+            }
+            continuation = PropertiesParser.isContinued(base, pos, end, continuation);
+            if (!skipping) {
+                out.write(base, pos, next - pos);
+                lineStart = next > end;
+            }
+            pos = next;
+        }
+        // 新增的 key 追加到最后
+        for (Map.Entry<String, String> entry : updates.entrySet()) {
+            if (entry.getValue() != null) {
+                if (!lineStart) {
+                    out.write('\n');
+                    lineStart = true;
+                }
+                byte[] line = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                out.write(line, 0, line.length);
+                out.write('\n');
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 基于块匹配(rolling hash)生成二进制补丁
+     */
+    public static byte[] createBinaryPatch(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, target.length / 8));
+        out.write(MAGIC, 0, MAGIC.length);
+        Map<Long, Integer> blocks = new HashMap<>();
+        for (int off = 0; off + BLOCK <= base.length; off += BLOCK) {
+            blocks.putIfAbsent(hash(base, off), off);
+        }
+        long pow = 1;
+        for (int i = 0; i < BLOCK - 1; i++) {
+            pow *= PRIME;
+        }
+        int literal = 0, i = 0;
+        long h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            Integer off = blocks.get(h);
+            if (off != null && regionMatches(base, off, target, i, BLOCK)) {
+                int len = BLOCK;
+                while (off + len < base.length && i + len < target.length && base[off + len] == target[i + len]) {
+                    len++;
+                }
+                // 匹配向前扩展到未输出的新内容里
+                int back = 0;
+                while (back < i - literal && back < off && base[off - back - 1] == target[i - back - 1]) {
+                    back++;
+                }
+                writeAdd(out, target, literal, i - back - literal);
+                writeCopy(out, off - back, len + back);
+                i += len;
+                literal = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+                continue;
+            }
+            if (i + BLOCK < target.length) {
+                h = (h - target[i] * pow) * PRIME + target[i + BLOCK];
+            }
+            i++;
+        }
+        writeAdd(out, target, literal, target.length - literal);
+        return out.toByteArray();
+    }
+
+    public static byte[] applyBinaryPatch(byte[] base, byte[] patch) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (patch.length <= i || patch[i] != MAGIC[i]) {
+                throw new IllegalArgumentException("Not a binary patch");
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(base.length + patch.length);
+        int[] pos = {MAGIC.length};
+        while (pos[0] < patch.length) {
+            int op = patch[pos[0]++];
+            if (op == OP_COPY) {
+                int off = readVarint(patch, pos), len = readVarint(patch, pos);
+                if (off < 0 || len < 0 || off + len > base.length) {
+                    throw new IllegalArgumentException("Copy out of range: " + off + "+" + len);
+                }
+                out.write(base, off, len);
+            } else if (op == OP_ADD) {
+                int len = readVarint(patch, pos);
+                if (len < 0 || pos[0] + len > patch.length) {
+                    throw new IllegalArgumentException("Add out of range: " + len);
+                }
+                out.write(patch, pos[0], len);
+                pos[0] += len;
+            } else {
+                throw new IllegalArgumentException("Unknown op: " + op);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static long hash(byte[] data, int off) {
+        long h = 0;
+        for (int i = off; i < off + BLOCK; i++) {
+            h = h * PRIME + data[i];
+        }
+        return h;
+    }
+
+    private static boolean regionMatches(byte[] a, int aOff, byte[] b, int bOff, int len) {
+        for (int i = 0; i < len; i++) {
+            if (a[aOff + i] != b[bOff + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeCopy(ByteArrayOutputStream out, int off, int len) {
+        out.write(OP_COPY);
+        writeVarint(out, off);
+        writeVarint(out, len);
+    }
+
+    private static void writeAdd(ByteArrayOutputStream out, byte[] data, int off, int len) {
+        if (len > 0) {
+            out.write(OP_ADD);
+            writeVarint(out, len);
+            out.write(data, off, len);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated patch");
+            }
+            byte b = data[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 
 /**
  * 配置文件变更回调接口，用户可实现这个接口来处理配置文件的变更。
+ * 回调在单独的线程池上异步执行, 同一个回调按顺序执行。
  *
  * @author houkangxi
  */
@@ -15,4 +16,13 @@ public interface ConfigFileUpdateCallback {
      * @param configFile - 配置文件，目錄為disconf下載目錄。
      */
     void onUpdate(File configFile);
+
+    /**
+     * 是否订阅这个配置项, 默认订阅全部
+     *
+     * @param item - 配置项文件名, 如 app.properties
+     */
+    default boolean accept(String item) {
+        return true;
+    }
 }
@@ -0,0 +1,36 @@
+package io.disconf.client.core;
+
+/**
+ * 与 JDK 9 {@code java.util.concurrent.Flow} 相同的响应式流接口, 在 JDK 8 上也能使用。
+ * JDK 9+ 或 Reactor/RxJava 可以通过简单的适配器(如 {@code FlowAdapters})对接。
+ *
+ * @author houkangxi
+ */
+public final class ConfigFlow {
+
+    private ConfigFlow() {
+    }
+
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /**
+         * 请求 n 个元素, n 必须大于 0
+         */
+        void request(long n);
+
+        void cancel();
+    }
+}
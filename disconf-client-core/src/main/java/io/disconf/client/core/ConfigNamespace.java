@@ -0,0 +1,90 @@
+package io.disconf.client.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一组配置项所在的命名空间 (disconf 的 app/version/env)。
+ * 一个配置客户端可以同时订阅多个命名空间, 比如公共配置 + 应用自己的配置,
+ * 共用一个 ZK 会话和下载流程, 每个配置项是合并结果里的一层。
+ * <p>
+ * precedence 大的覆盖小的, 相同时按声明顺序; 同一个命名空间里后面的配置项覆盖前面的。
+ * version/env 为空时使用 disconf.properties 里的值。
+ *
+ * @author houkangxi
+ */
+public class ConfigNamespace {
+    private final String appName;
+    private final List<String> items;
+    private String version;
+    private String env;
+    private int precedence;
+
+    public ConfigNamespace(String appName, String... items) {
+        this.appName = appName;
+        this.items = Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getEnv() {
+        return env;
+    }
+
+    public void setEnv(String env) {
+        this.env = env;
+    }
+
+    public int getPrecedence() {
+        return precedence;
+    }
+
+    public void setPrecedence(int precedence) {
+        this.precedence = precedence;
+    }
+
+    /**
+     * 命名空间名 app_version_env, 也是 ZK 节点路径的一部分
+     */
+    public String getName(String defaultVersion, String defaultEnv) {
+        return appName + '_' + (version != null ? version : defaultVersion) + '_' + (env != null ? env : defaultEnv);
+    }
+
+    /**
+     * 配置项节点的前缀 /disconf/app_version_env/file/
+     */
+    public String getNodePrefix(String defaultVersion, String defaultEnv) {
+        return "/disconf/" + getName(defaultVersion, defaultEnv) + "/file/";
+    }
+
+    /**
+     * 从节点路径取命名空间名, 不是配置项节点返回 null
+     */
+    public static String nameOf(String node) {
+        if (!node.startsWith("/disconf/")) {
+            return null;
+        }
+        int end = node.indexOf("/file/", "/disconf/".length());
+        return end < 0 ? null : node.substring("/disconf/".length(), end);
+    }
+
+    @Override
+    public String toString() {
+        return appName + items + (precedence != 0 ? "@" + precedence : "");
+    }
+}
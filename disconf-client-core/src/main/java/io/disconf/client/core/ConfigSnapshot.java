@@ -0,0 +1,146 @@
+package io.disconf.client.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * 不可变的配置快照, key 按字典序排好, 用于 merge-join 方式的 diff 和二分查找。
+ *
+ * @author houkangxi
+ */
+public final class ConfigSnapshot {
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(new String[0], new String[0]);
+    private static final Comparator<Map.Entry> KEY_ORDER = Comparator.comparing(entry -> String.valueOf(entry.getKey()));
+
+    private final String[] keys;
+    private final String[] values;
+    // 每个 key 在源文件中的行号, 不是从文件解析来的为 null
+    private final int[] lines;
+    // 值里含有占位符 ${...} 的下标, 延迟计算
+    private volatile int[] placeholders;
+    private volatile String digest;
+
+    ConfigSnapshot(String[] keys, String[] values) {
+        this(keys, values, null);
+    }
+
+    ConfigSnapshot(String[] keys, String[] values, int[] lines) {
+        this.keys = keys;
+        this.values = values;
+        this.lines = lines;
+    }
+
+    /**
+     * 从 Map/Properties 构建快照, 非 String 的 key/value 用 String.valueOf 转换
+     */
+    public static ConfigSnapshot of(Map<?, ?> map) {
+        if (map == null || map.isEmpty()) {
+            return EMPTY;
+        }
+        // Properties 的 entrySet().toArray 是加锁的, 避免迭代过程中被修改
+        Object[] entries = map.entrySet().toArray();
+        Arrays.sort(entries, (a, b) -> KEY_ORDER.compare((Map.Entry) a, (Map.Entry) b));
+        String[] keys = new String[entries.length];
+        String[] values = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            Map.Entry entry = (Map.Entry) entries[i];
+            keys[i] = String.valueOf(entry.getKey());
+            values[i] = String.valueOf(entry.getValue());
+        }
+        return new ConfigSnapshot(keys, values);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    public String value(int index) {
+        return values[index];
+    }
+
+    /**
+     * 二分查找, 不存在返回 null
+     */
+    public String get(String key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    /**
+     * 第 index 个 key 在源文件中的行号, 未知返回 -1
+     */
+    public int line(int index) {
+        return lines == null ? -1 : lines[index];
+    }
+
+    /**
+     * key 在源文件中的行号, 不存在或未知返回 -1
+     */
+    public int lineOf(String key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i >= 0 ? line(i) : -1;
+    }
+
+    public boolean containsKey(String key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    /**
+     * 值里含有占位符的 key 的下标, 这些 key 的值即使没变, 解析结果也可能随被引用的 key 变化
+     */
+    int[] placeholderIndexes() {
+        int[] indexes = placeholders;
+        if (indexes == null) {
+            int n = 0;
+            int[] tmp = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].contains("${")) {
+                    tmp[n++] = i;
+                }
+            }
+            placeholders = indexes = Arrays.copyOf(tmp, n);
+        }
+        return indexes;
+    }
+
+    /**
+     * 内容摘要: 按 key 排序后 key\0value\0 的 UTF-8 字节的 MD5, 与格式、注释、顺序无关。
+     * 增量下载时用作 properties 配置项的版本号
+     */
+    public String digest() {
+        String d = digest;
+        if (d == null) {
+            MessageDigest md5 = ConfigDelta.md5();
+            for (int i = 0; i < keys.length; i++) {
+                md5.update(keys[i].getBytes(StandardCharsets.UTF_8));
+                md5.update((byte) 0);
+                md5.update(values[i].getBytes(StandardCharsets.UTF_8));
+                md5.update((byte) 0);
+            }
+            digest = d = ConfigDelta.hex(md5.digest());
+        }
+        return d;
+    }
+
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        for (int i = 0; i < keys.length; i++) {
+            properties.put(keys[i], values[i]);
+        }
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigSnapshot{size=" + keys.length + '}';
+    }
+}
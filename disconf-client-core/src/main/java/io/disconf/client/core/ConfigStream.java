@@ -0,0 +1,254 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 配置变更流: 把 {@link ConfigChangeEvent} 发布给响应式订阅者, 支持背压。
+ * <p>
+ * 每个订阅者最多保留一个待发送的事件: 订阅者来不及处理(没有 request 或者还在 onNext)时,
+ * 新的变更合并到待发送的事件里 (同一个 key 旧值取最早的, 新值取最新的, 版本取最新的),
+ * 所以慢的订阅者只会少收到中间值, 不会拖慢更新链路, 也不会无限堆积。
+ * 发布在更新线程上只做合并, onNext 在单独的线程上执行, 同一个订阅者串行。
+ *
+ * @author houkangxi
+ */
+public class ConfigStream implements ConfigFlow.Publisher<ConfigChangeEvent>, ConfigChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigStream.class);
+    // 被合并掉的事件数, tag = 订阅者类名
+    public static final String CONFLATED = "stream.conflated";
+
+    private final Executor executor;
+    // 默认线程池由流自己创建, 关闭时一起关闭
+    private final boolean ownsExecutor;
+    private volatile boolean closed;
+    private final CopyOnWriteArrayList<StreamSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+
+    public ConfigStream() {
+        this(defaultExecutor(Integer.getInteger("disconf.stream.threads", 2)), true);
+    }
+
+    /**
+     * @param executor - 执行 onNext 的线程池
+     */
+    public ConfigStream(Executor executor) {
+        this(executor, false);
+    }
+
+    private ConfigStream(Executor executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    private static ExecutorService defaultExecutor(int threads) {
+        // 每个订阅者同时最多一个任务, 队列不会无限增长
+        return ExecutorStrategy.get().newExecutor("disconf-stream", threads);
+    }
+
+    @Override
+    public void subscribe(ConfigFlow.Subscriber<? super ConfigChangeEvent> subscriber) {
+        subscribe(subscriber, Collections.emptyList());
+    }
+
+    /**
+     * 只订阅 key 以这些前缀开头的变更
+     */
+    public void subscribe(ConfigFlow.Subscriber<? super ConfigChangeEvent> subscriber, Collection<String> keyPrefixes) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        StreamSubscription subscription = new StreamSubscription(subscriber, new ArrayList<>(keyPrefixes));
+        subscriptions.add(subscription);
+        try {
+            subscriber.onSubscribe(subscription);
+        } catch (Throwable e) {
+            subscription.fail(e);
+        }
+        if (closed) {
+            // 已经关闭, 直接结束
+            subscription.complete();
+        }
+    }
+
+    /**
+     * 只订阅部分 key 的发布者视图
+     */
+    public ConfigFlow.Publisher<ConfigChangeEvent> withKeyPrefixes(String... keyPrefixes) {
+        List<String> prefixes = Arrays.asList(keyPrefixes);
+        return subscriber -> subscribe(subscriber, prefixes);
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void onChange(ConfigChangeEvent event) {
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 通知所有订阅者结束 (onComplete), 之后的变更不再发布; 默认线程池在发完结束通知后关闭
+     */
+    public void close() {
+        closed = true;
+        for (StreamSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private class StreamSubscription implements ConfigFlow.Subscription, Runnable {
+        final ConfigFlow.Subscriber<? super ConfigChangeEvent> subscriber;
+        final List<String> prefixes;
+        final String name;
+        // 以下字段由 this 保护
+        long demand;
+        ConfigChangeEvent pending;
+        Throwable error;
+        boolean completed;
+        boolean running;
+        boolean cancelled;
+
+        StreamSubscription(ConfigFlow.Subscriber<? super ConfigChangeEvent> subscriber, List<String> prefixes) {
+            this.subscriber = subscriber;
+            this.prefixes = prefixes;
+            this.name = subscriber.getClass().getName();
+        }
+
+        void offer(ConfigChangeEvent event) {
+            ConfigChangeSet changes = event.getChanges().withPrefixes(prefixes);
+            if (changes.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                if (cancelled || completed) {
+                    return;
+                }
+                if (pending == null) {
+                    pending = changes == event.getChanges() ? event : new ConfigChangeEvent(event.getItem(), event.getVersion(), changes);
+                } else {
+                    // 上一个还没发出去, 合并, 最新的值生效
+                    metrics.increment(CONFLATED, name, 1);
+                    String item = pending.getItem().equals(event.getItem()) ? event.getItem() : pending.getItem() + ',' + event.getItem();
+                    pending = new ConfigChangeEvent(item, event.getVersion(), pending.getChanges().then(changes));
+                }
+            }
+            schedule();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            schedule();
+        }
+
+        void fail(Throwable e) {
+            synchronized (this) {
+                error = e;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("non-positive request: " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                pending = null;
+            }
+            subscriptions.remove(this);
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (running || cancelled || !(error != null || completed || pending != null && demand > 0)) {
+                    return;
+                }
+                running = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                if (closed) {
+                    // 线程池已经随流关闭, 剩下的通知 (结束) 在当前线程发出
+                    run();
+                    return;
+                }
+                synchronized (this) {
+                    running = false;
+                }
+                logger.error("stream executor rejected: " + name, e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                ConfigChangeEvent event = null;
+                Throwable failure = null;
+                boolean done = false;
+                synchronized (this) {
+                    if (cancelled) {
+                        running = false;
+                        return;
+                    }
+                    if (error != null) {
+                        failure = error;
+                        cancelled = true;
+                    } else if (pending != null && demand > 0) {
+                        event = pending;
+                        pending = null;
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    } else if (completed) {
+                        done = true;
+                        cancelled = true;
+                    } else {
+                        running = false;
+                        return;
+                    }
+                }
+                try {
+                    if (failure != null) {
+                        subscriptions.remove(this);
+                        subscriber.onError(failure);
+                    } else if (done) {
+                        subscriptions.remove(this);
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onNext(event);
+                    }
+                } catch (Throwable e) {
+                    // 订阅者违反约定抛出异常, 取消订阅
+                    logger.error("subscriber error, cancelled: " + name, e);
+                    cancel();
+                }
+            }
+        }
+    }
+}
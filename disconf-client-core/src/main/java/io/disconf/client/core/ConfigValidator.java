@@ -0,0 +1,19 @@
+package io.disconf.client.core;
+
+import java.util.Properties;
+
+/**
+ * 配置生效前的校验, 比如取值范围、key 之间的约束。
+ * 在准备阶段执行, 抛出异常则拒绝本次更新, 已经生效的配置和 bean 都不变。
+ * Spring 容器里实现这个接口的 bean 会自动注册。
+ *
+ * @author houkangxi
+ */
+public interface ConfigValidator {
+
+    /**
+     * @param changes   - 本次的变更
+     * @param candidate - 变更后的全部配置, 只读
+     */
+    void validate(ConfigChangeSet changes, Properties candidate) throws Exception;
+}
@@ -1,5 +1,6 @@
 package io.disconf.client.core;
 
+import io.disconf.client.metrics.DisconfMetrics;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.Watcher.Event.KeeperState;
@@ -99,6 +100,7 @@ public class ConnectionWatcher implements Watcher {
                 close();
 
                 connect(internalHost);
+                DisconfMetrics.get().increment(DisconfMetrics.RECONNECT, null, 1);
 
             } catch (Exception e) {
                 LOGGER.error("retries: " + retries, e);
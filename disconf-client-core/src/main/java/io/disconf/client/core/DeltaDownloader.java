@@ -0,0 +1,234 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 下载配置项, 开启增量时带上本地已有的版本号, 服务端返回补丁则在本地文件上应用;
+ * 服务端不支持、找不到版本、本地文件被改动、补丁校验失败时都退回全量下载。协议见 {@link ConfigDelta}。
+ * 开启压缩时带上 Accept-Encoding, 按响应的 Content-Encoding 边读边解压。
+ *
+ * @author houkangxi
+ */
+public class DeltaDownloader {
+    private static final Logger logger = LoggerFactory.getLogger(DeltaDownloader.class);
+    // 增量下载计数, tag = hit/fallback
+    public static final String DELTA = "download.delta";
+
+    private final Map<String, Base> bases = new ConcurrentHashMap<>();
+    private volatile boolean enabled = Boolean.getBoolean("disconf.delta");
+    private volatile boolean compression = Boolean.getBoolean("disconf.compression");
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * 下载时协商压缩 (gzip, 有 zstd-jni 时优先 zstd)
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 记录配置项当前的本地文件, 作为下次增量下载的基准
+     *
+     * @param snapshot - properties 配置项解析后的快照, 其他文件为 null
+     */
+    public void remember(String node, File file, ConfigSnapshot snapshot) {
+        bases.put(node, new Base(file, snapshot));
+    }
+
+    /**
+     * @param url - 配置项的下载地址, http 地址才支持增量和压缩
+     */
+    public Download download(String node, URL url) throws IOException {
+        Base base = bases.get(node);
+        if (enabled && base != null && base.file.isFile()) {
+            try {
+                Download download = downloadDelta(node, url, base);
+                if (download != null) {
+                    return download;
+                }
+            } catch (Exception e) {
+                logger.warn("增量下载失败, 改为全量下载: " + node, e);
+            }
+            DisconfMetrics.get().increment(DELTA, "fallback", 1);
+        }
+        if (compression && isHttp(url)) {
+            HttpURLConnection http = open(url);
+            if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + http.getResponseCode() + ": " + url);
+            }
+            return new Download(read(node, http), null);
+        }
+        byte[] data;
+        try (InputStream stream = url.openStream()) {
+            data = readFully(stream);
+        }
+        DisconfMetrics.get().recordValue(DisconfMetrics.DOWNLOAD_BYTES, node, data.length);
+        return new Download(data, null);
+    }
+
+    // 返回 null 表示需要全量下载
+    private Download downloadDelta(String node, URL url, Base base) throws IOException {
+        if (!isHttp(url)) {
+            return null;
+        }
+        byte[] baseData = Files.readAllBytes(base.file.toPath());
+        String baseVersion = base.snapshot != null ? base.snapshot.digest() : ConfigDelta.version(node, baseData);
+        String spec = url.toString();
+        HttpURLConnection http = open(new URL(spec + (spec.indexOf('?') < 0 ? '?' : '&')
+                + ConfigDelta.BASE_VERSION_PARAM + '=' + baseVersion));
+        if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            InputStream error = http.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            return null;
+        }
+        byte[] body = read(node, http);
+        String patchType = http.getHeaderField(ConfigDelta.PATCH_HEADER);
+        if (patchType == null) {
+            // 服务端返回的是全量内容
+            return new Download(body, null);
+        }
+        byte[] data;
+        ConfigSnapshot snapshot = null;
+        String version;
+        if (ConfigDelta.PROPERTIES.equals(patchType)) {
+            data = ConfigDelta.applyPropertiesPatch(baseData,
+                    base.snapshot != null ? base.snapshot : PropertiesParser.parse(baseData), body);
+            snapshot = PropertiesParser.parse(data);
+            version = snapshot.digest();
+        } else {
+            data = ConfigDelta.apply(patchType, baseData, body);
+            version = ConfigDelta.version(node, data);
+        }
+        String expected = http.getHeaderField(ConfigDelta.VERSION_HEADER);
+        if (!version.equals(expected)) {
+            logger.warn("补丁校验失败: {}, version={}, expected={}", new Object[]{node, version, expected});
+            return null;
+        }
+        DisconfMetrics.get().increment(DELTA, "hit", 1);
+        logger.info("增量下载: {}, patch={} bytes, size={} bytes", new Object[]{node, body.length, data.length});
+        return new Download(data, snapshot);
+    }
+
+    private static boolean isHttp(URL url) {
+        return url.getProtocol().startsWith("http");
+    }
+
+    private HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        if (compression) {
+            http.setRequestProperty("Accept-Encoding", Compression.acceptEncoding());
+        }
+        return http;
+    }
+
+    // 边读边解压, 下载字节数按压缩后的计
+    private static byte[] read(String node, HttpURLConnection http) throws IOException {
+        Compression compression = Compression.forEncoding(http.getContentEncoding());
+        CountingInputStream counting = new CountingInputStream(http.getInputStream());
+        byte[] data;
+        try (InputStream stream = compression.decompress(counting)) {
+            data = readFully(stream);
+        }
+        DisconfMetrics.get().recordValue(DisconfMetrics.DOWNLOAD_BYTES, node, counting.count);
+        if (compression != Compression.NONE) {
+            logger.debug("{}: {} {} -> {} bytes", new Object[]{node, compression.getEncoding(), counting.count, data.length});
+        }
+        return data;
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * 下载结果, 应用 properties 补丁时校验用的快照一并返回, 避免再解析一次
+     */
+    public static final class Download {
+        private final byte[] data;
+        private final ConfigSnapshot snapshot;
+
+        Download(byte[] data, ConfigSnapshot snapshot) {
+            this.data = data;
+            this.snapshot = snapshot;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * 解析好的快照, 没有时为 null
+         */
+        public ConfigSnapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static class Base {
+        final File file;
+        final ConfigSnapshot snapshot;
+
+        Base(File file, ConfigSnapshot snapshot) {
+            this.file = file;
+            this.snapshot = snapshot;
+        }
+    }
+}
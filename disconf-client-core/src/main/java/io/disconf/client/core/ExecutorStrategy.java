@@ -0,0 +1,119 @@
+package io.disconf.client.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下载、回调等阻塞任务的线程模型。
+ * JDK 21+ 默认使用虚拟线程, 每个任务一个线程, 阻塞在 HTTP/文件 IO 或用户回调上不占用平台线程;
+ * 更早的 JDK 使用有界的平台线程池。用 -Ddisconf.executor=auto|virtual|platform 指定, 虚拟线程不可用时退回平台线程。
+ * <p>
+ * 工程以 JDK 8 编译, 虚拟线程的 API 通过反射调用。
+ *
+ * @author houkangxi
+ */
+public enum ExecutorStrategy {
+    PLATFORM,
+    VIRTUAL;
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorStrategy.class);
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    public boolean isAvailable() {
+        return this != VIRTUAL || VirtualThreads.AVAILABLE;
+    }
+
+    /**
+     * 当前配置的线程模型 (-Ddisconf.executor)
+     */
+    public static ExecutorStrategy get() {
+        return forName(System.getProperty("disconf.executor"));
+    }
+
+    /**
+     * @param name - virtual/platform, 为空或 auto 时有虚拟线程就用虚拟线程
+     */
+    public static ExecutorStrategy forName(String name) {
+        if (name == null || name.trim().isEmpty() || "auto".equalsIgnoreCase(name.trim())) {
+            return VIRTUAL.isAvailable() ? VIRTUAL : PLATFORM;
+        }
+        ExecutorStrategy strategy = valueOf(name.trim().toUpperCase());
+        if (!strategy.isAvailable()) {
+            logger.warn("虚拟线程不可用 (需要 JDK 21+), 使用平台线程");
+            return PLATFORM;
+        }
+        return strategy;
+    }
+
+    /**
+     * @param name    - 线程名前缀
+     * @param threads - 平台线程数, 虚拟线程不限制
+     */
+    public ExecutorService newExecutor(String name, int threads) {
+        return newExecutor(name, threads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param name          - 线程名前缀
+     * @param threads       - 平台线程数, 虚拟线程不限制
+     * @param queueCapacity - 平台线程池的队列长度, 满了拒绝
+     */
+    public ExecutorService newExecutor(String name, int threads, int queueCapacity) {
+        if (this == VIRTUAL && VirtualThreads.AVAILABLE) {
+            return VirtualThreads.newExecutor(name + '-');
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                queueCapacity == Integer.MAX_VALUE ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, name + '-' + THREAD_SEQ.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Thread.ofVirtual().name(prefix, 1).factory() + Executors.newThreadPerTaskExecutor(factory)
+    private static final class VirtualThreads {
+        static final Method OF_VIRTUAL, NAME, FACTORY, NEW_THREAD_PER_TASK;
+        static final boolean AVAILABLE;
+
+        static {
+            Method ofVirtual = null, name = null, factory = null, newThreadPerTask = null;
+            boolean available = false;
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                name = builder.getMethod("name", String.class, long.class);
+                factory = builder.getMethod("factory");
+                newThreadPerTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                // JDK 19/20 没有开启 preview 时会抛 UnsupportedOperationException
+                ofVirtual.invoke(null);
+                available = true;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // JDK 21 之前
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            FACTORY = factory;
+            NEW_THREAD_PER_TASK = newThreadPerTask;
+            AVAILABLE = available;
+        }
+
+        static ExecutorService newExecutor(String prefix) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+                return (ExecutorService) NEW_THREAD_PER_TASK.invoke(null, (ThreadFactory) FACTORY.invoke(builder));
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package io.disconf.client.core;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分层的配置模型: 每个配置项一层, 另外有本地覆盖层和系统属性层, 按优先级合并。
+ * 层、合并结果、含占位符的 key 和版本号放在一个不可变的状态里, 提交时整体替换 (一次 volatile 写),
+ * 读到的合并结果不会是更新了一半的; 替换某一层时只重新计算这一层涉及的 key。
+ *
+ * @author houkangxi
+ */
+public class LayeredProperties {
+    // conf/app.properties, 覆盖所有中心化配置
+    public static final String LOCAL_LAYER = "local";
+    public static final int LOCAL_PRECEDENCE = 1000;
+    // 系统属性: override 模式下最高, fallback 模式下最低
+    public static final String SYSTEM_LAYER = "system";
+    public static final int SYSTEM_OVERRIDE_PRECEDENCE = Integer.MAX_VALUE;
+    public static final int SYSTEM_FALLBACK_PRECEDENCE = Integer.MIN_VALUE;
+    // 通过 setLocations/setProperties 额外指定的属性
+    public static final String DEFAULT_LAYER = "default";
+    public static final int DEFAULT_PRECEDENCE = -1000;
+
+    private volatile State state = State.EMPTY;
+    // 远程和本地配置的更新共用, 准备、切换、注入整个过程串行
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    /**
+     * 合并后的配置, 只读; 配置变更后是新的实例, 需要最新值时重新获取
+     */
+    public Properties getMergedProperties() {
+        return state.merged;
+    }
+
+    public String get(String key) {
+        return state.merged.getProperty(key);
+    }
+
+    /**
+     * key 的当前值来自哪一层, 格式 层名:行号(行号未知时只有层名), 不存在返回 null
+     */
+    public String sourceOf(String key) {
+        for (Layer layer : state.layers) {
+            if (layer.snapshot.containsKey(key)) {
+                int line = layer.snapshot.lineOf(key);
+                return line > 0 ? layer.name + ':' + line : layer.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 某一层当前的快照, 没有这一层返回 null
+     */
+    public ConfigSnapshot getLayer(String name) {
+        for (Layer layer : state.layers) {
+            if (layer.name.equals(name)) {
+                return layer.snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 所有层, 按优先级从高到低
+     */
+    public List<Layer> getLayers() {
+        return Collections.unmodifiableList(Arrays.asList(state.layers));
+    }
+
+    /**
+     * 合并结果里值含有 ${...} 的 key
+     */
+    public Set<String> getPlaceholderKeys() {
+        return state.placeholderKeys;
+    }
+
+    /**
+     * 每次合并结果有变化时递增
+     */
+    public long getVersion() {
+        return state.version;
+    }
+
+    /**
+     * 配置更新锁: 不同来源(远程、本地文件)的更新从 {@link #stage} 到应用变更都要持有这个锁, 串行执行
+     */
+    public Lock getUpdateLock() {
+        return updateLock;
+    }
+
+    public ConfigChangeSet putLayer(String name, int precedence, ConfigSnapshot snapshot) {
+        return putLayers(Collections.singletonList(new Layer(name, precedence, snapshot)));
+    }
+
+    public ConfigChangeSet removeLayer(String name) {
+        return putLayers(Collections.singletonList(new Layer(name, 0, null)));
+    }
+
+    /**
+     * 新增或替换若干层(同名替换, snapshot 为 null 表示删除), 返回合并结果的变更
+     */
+    public ConfigChangeSet putLayers(Collection<Layer> updates) {
+        updateLock.lock();
+        try {
+            return commit(stage(updates));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * 准备替换若干层: 只计算变更, 不修改当前配置, 校验通过后用 {@link #commit(Staged)} 切换;
+     * 准备到提交之间要持有 {@link #getUpdateLock()}, 期间配置被修改过的话提交会失败
+     */
+    public Staged stage(Collection<Layer> updates) {
+        State base = this.state;
+        Map<String, Layer> byName = new LinkedHashMap<>();
+        for (Layer layer : base.layers) {
+            byName.put(layer.name, layer);
+        }
+        TreeSet<String> candidates = new TreeSet<>();
+        for (Layer update : updates) {
+            Layer old = byName.remove(update.name);
+            ConfigSnapshot oldSnapshot = old == null ? ConfigSnapshot.EMPTY : old.snapshot;
+            ConfigSnapshot newSnapshot = update.snapshot == null ? ConfigSnapshot.EMPTY : update.snapshot;
+            if (old != null && old.precedence != update.precedence) {
+                // 优先级变了, 这一层所有 key 都要重新计算
+                addKeys(candidates, oldSnapshot);
+                addKeys(candidates, newSnapshot);
+            } else {
+                candidates.addAll(PropertiesDiff.diff(oldSnapshot, newSnapshot).keys());
+            }
+            if (update.snapshot != null) {
+                byName.put(update.name, update);
+            }
+        }
+        Layer[] sorted = byName.values().toArray(new Layer[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(b.precedence, a.precedence));
+
+        List<ConfigChange> changes = new ArrayList<>();
+        for (String key : candidates) {
+            String oldValue = base.merged.getProperty(key);
+            String newValue = lookup(sorted, key);
+            if (Objects.equals(oldValue, newValue)) {
+                continue;
+            }
+            changes.add(newValue == null ? new ConfigChange(key, oldValue, null, ConfigChange.Type.REMOVED)
+                    : new ConfigChange(key, oldValue, newValue, oldValue == null ? ConfigChange.Type.ADDED : ConfigChange.Type.MODIFIED));
+        }
+        return new Staged(this, base, sorted, changes.isEmpty() ? ConfigChangeSet.EMPTY : new ConfigChangeSet(changes));
+    }
+
+    /**
+     * 切换到准备好的配置, 层、合并结果一次替换
+     *
+     * @return 合并结果的变更
+     * @throws IllegalStateException 准备之后配置被修改过 (准备时的变更和校验已经不准确), 需要重新准备
+     */
+    public synchronized ConfigChangeSet commit(Staged staged) {
+        if (staged.owner != this) {
+            throw new IllegalArgumentException("staged by another LayeredProperties");
+        }
+        if (staged.base != this.state) {
+            throw new IllegalStateException("configuration changed since staged, stage again");
+        }
+        ConfigChangeSet changes = staged.changes;
+        this.state = changes.isEmpty() ? new State(staged.layers, staged.base.merged, staged.base.placeholderKeys, staged.base.version)
+                : new State(staged.layers, staged.getProperties(), staged.getPlaceholderKeys(), staged.base.version + 1);
+        return changes;
+    }
+
+    private static void addKeys(Set<String> keys, ConfigSnapshot snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            keys.add(snapshot.key(i));
+        }
+    }
+
+    private static String lookup(Layer[] layers, String key) {
+        for (Layer layer : layers) {
+            String value = layer.snapshot.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 准备好但还没生效的配置
+     */
+    public static final class Staged {
+        private final LayeredProperties owner;
+        // 准备时的状态, 提交时不一致说明期间有其他修改
+        private final State base;
+        private final Layer[] layers;
+        private final ConfigChangeSet changes;
+        private volatile Properties properties;
+        private volatile Set<String> placeholderKeys;
+
+        Staged(LayeredProperties owner, State base, Layer[] layers, ConfigChangeSet changes) {
+            this.owner = owner;
+            this.base = base;
+            this.layers = layers;
+            this.changes = changes;
+        }
+
+        /**
+         * 生效后合并结果的变更
+         */
+        public ConfigChangeSet getChanges() {
+            return changes;
+        }
+
+        /**
+         * 生效后的全部配置, 只读 (提交后就是 {@link LayeredProperties#getMergedProperties()}), 第一次调用时在准备时的合并结果上应用变更
+         */
+        public Properties getProperties() {
+            Properties result = properties;
+            if (result == null) {
+                result = new Properties();
+                result.putAll(base.merged);
+                for (ConfigChange change : changes.getChanges()) {
+                    if (change.getNewValue() == null) {
+                        result.remove(change.getKey());
+                    } else {
+                        result.put(change.getKey(), change.getNewValue());
+                    }
+                }
+                properties = result;
+            }
+            return result;
+        }
+
+        /**
+         * 生效后值含有 ${...} 的 key
+         */
+        public Set<String> getPlaceholderKeys() {
+            Set<String> result = placeholderKeys;
+            if (result == null) {
+                Set<String> keys = new HashSet<>(base.placeholderKeys);
+                for (ConfigChange change : changes.getChanges()) {
+                    String newValue = change.getNewValue();
+                    if (newValue != null && newValue.contains("${")) {
+                        keys.add(change.getKey());
+                    } else {
+                        keys.remove(change.getKey());
+                    }
+                }
+                result = Collections.unmodifiableSet(keys);
+                placeholderKeys = result;
+            }
+            return result;
+        }
+    }
+
+    // 一次提交后的全部状态, 不可变
+    private static final class State {
+        static final State EMPTY = new State(new Layer[0], new Properties(), Collections.emptySet(), 0);
+        // 按优先级从高到低
+        final Layer[] layers;
+        final Properties merged;
+        final Set<String> placeholderKeys;
+        // 每次合并结果有变化时递增
+        final long version;
+
+        State(Layer[] layers, Properties merged, Set<String> placeholderKeys, long version) {
+            this.layers = layers;
+            this.merged = merged;
+            this.placeholderKeys = placeholderKeys;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 配置层
+     */
+    public static final class Layer {
+        private final String name;
+        private final int precedence;
+        private final ConfigSnapshot snapshot;
+
+        public Layer(String name, int precedence, ConfigSnapshot snapshot) {
+            this.name = name;
+            this.precedence = precedence;
+            this.snapshot = snapshot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPrecedence() {
+            return precedence;
+        }
+
+        public ConfigSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + precedence + ", " + snapshot + ")";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import io.disconf.client.metrics.UpdateTrace;
+import io.disconf.client.metrics.UpdateTracer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 本地配置文件(如 conf/app.properties)的热加载: 用 WatchService 监听所在目录,
+ * 一批文件事件在 debounce 时间内没有新事件后, 只重新读取变化了的文件, 替换对应的配置层,
+ * 和远程配置变更一样先交给 {@link ConfigChangeHandler} 准备 (校验失败不生效), 再应用。内容没变(如编辑器多次写入)时不处理。
+ * 与远程配置的更新通过 {@link LayeredProperties#getUpdateLock()} 串行执行。
+ *
+ * @author houkangxi
+ */
+public class LocalConfigWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LocalConfigWatcher.class);
+    // 连续不断的事件最多等待 debounce 的倍数, 避免一直不生效
+    private static final int MAX_DEBOUNCE_ROUNDS = 10;
+
+    private final LayeredProperties layeredProperties;
+    private final ConfigChangeHandler changeHandler;
+    private final long debounceMillis;
+    // 目录 -> (文件名 -> 监听的文件)
+    private final Map<Path, Map<String, WatchedFile>> watchedFiles = new ConcurrentHashMap<>();
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+    private final UpdateTracer tracer = UpdateTracer.get();
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile ConfigChangeNotifier changeNotifier;
+
+    public LocalConfigWatcher(LayeredProperties layeredProperties, ConfigChangeHandler changeHandler,
+                              long debounceMillis) throws IOException {
+        this.layeredProperties = layeredProperties;
+        this.changeHandler = changeHandler;
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "disconf-local-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * 监听一个 properties 文件, 变化时替换名为 layer 的配置层; 当前内容以已有的配置层为准
+     */
+    public void watch(File file, String layer, int precedence) throws IOException {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Path dir = path.getParent();
+        ConfigSnapshot current = layeredProperties.getLayer(layer);
+        WatchedFile watched = new WatchedFile(path, layer, precedence, current == null ? null : current.digest());
+        Map<String, WatchedFile> files = watchedFiles.get(dir);
+        if (files == null) {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            files = new ConcurrentHashMap<>();
+            watchedFiles.put(dir, files);
+        }
+        files.put(path.getFileName().toString(), watched);
+        logger.info("watch local config: {} -> {}", path, layer);
+    }
+
+    /**
+     * 变更在重新注入后也通知给这里注册的 {@link ConfigChangeListener}
+     */
+    public void setChangeNotifier(ConfigChangeNotifier changeNotifier) {
+        this.changeNotifier = changeNotifier;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                WatchKey key = watchService.take();
+                long start = System.nanoTime();
+                Set<WatchedFile> pending = new LinkedHashSet<>();
+                collect(key, pending);
+                // debounce: 等到没有新事件
+                for (int i = 0; i < MAX_DEBOUNCE_ROUNDS
+                        && (key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null; i++) {
+                    collect(key, pending);
+                }
+                for (WatchedFile file : pending) {
+                    reload(file, start);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (Exception e) {
+                logger.error("local config watch error", e);
+            }
+        }
+        logger.info("local config watcher stopped.");
+    }
+
+    private void collect(WatchKey key, Set<WatchedFile> pending) {
+        Path dir = (Path) key.watchable();
+        Map<String, WatchedFile> files = watchedFiles.get(dir);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (files == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 丢了事件, 目录下监听的文件都检查一遍
+                pending.addAll(files.values());
+            } else {
+                WatchedFile file = files.get(event.context().toString());
+                if (file != null) {
+                    pending.add(file);
+                }
+            }
+        }
+        if (!key.reset()) {
+            logger.warn("local config dir is no longer accessible: {}", dir);
+        }
+    }
+
+    // 重新读取文件, 内容变了才替换配置层并注入; 文件被删除时该层清空
+    private void reload(WatchedFile file, long start) {
+        ConfigSnapshot snapshot;
+        long parseStart = System.nanoTime();
+        try {
+            snapshot = Files.exists(file.path) ? PropertiesParser.parse(Files.readAllBytes(file.path)) : ConfigSnapshot.EMPTY;
+        } catch (IOException e) {
+            logger.warn("ConfLoadError: " + file.path, e);
+            return;
+        }
+        String digest = snapshot.digest();
+        if (digest.equals(file.digest)) {
+            return;
+        }
+        String node = file.path.toString();
+        UpdateTrace trace = tracer.begin(node, -1);
+        Lock updateLock = layeredProperties.getUpdateLock();
+        updateLock.lock();
+        try {
+            UpdateTrace.mark(UpdateTrace.PARSE, node, parseStart);
+            long diffStart = System.nanoTime();
+            LayeredProperties.Staged staged = layeredProperties.stage(
+                    Collections.singletonList(new LayeredProperties.Layer(file.layer, file.precedence, snapshot)));
+            UpdateTrace.mark(UpdateTrace.DIFF, String.valueOf(staged.getChanges().size()), diffStart);
+            if (!staged.getChanges().isEmpty()) {
+                long prepareStart = System.nanoTime();
+                try {
+                    changeHandler.prepare(staged);
+                } catch (Exception e) {
+                    // 文件改错了, 保留当前配置, 改正后再生效
+                    metrics.increment(DisconfMetrics.UPDATE_REJECTED, file.layer, 1);
+                    logger.error("本地配置校验失败, 不生效: " + node, e);
+                    trace.fail("Rejected: " + e);
+                    return;
+                }
+                UpdateTrace.mark(UpdateTrace.PREPARE, node, prepareStart);
+            }
+            ConfigChangeSet changes = layeredProperties.commit(staged);
+            // 切换成功后才记录, 失败的内容再次保存时重新加载
+            file.digest = digest;
+            logger.info("local config changed: {}, {} keys", node, changes.size());
+            ConfigChangeSet applied = changeHandler.applyChanges(changes, layeredProperties);
+            long version = layeredProperties.getVersion();
+            metrics.gauge(DisconfMetrics.SNAPSHOT_VERSION, version);
+            if (changeNotifier != null) {
+                changeNotifier.fire(file.layer, version, applied);
+            }
+        } catch (Exception e) {
+            logger.error("local config reload error: " + node, e);
+            trace.fail(e.toString());
+        } finally {
+            updateLock.unlock();
+            trace.finish();
+        }
+        metrics.recordSince(DisconfMetrics.PROPAGATION, node, start);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("close WatchService", e);
+        }
+        thread.interrupt();
+    }
+
+    private static class WatchedFile {
+        final Path path;
+        final String layer;
+        final int precedence;
+        // 最后一次加载的内容摘要
+        volatile String digest;
+
+        WatchedFile(Path path, String layer, int precedence, String digest) {
+            this.path = path;
+            this.layer = layer;
+            this.precedence = precedence;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package io.disconf.client.core;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Properties 配置文件修改操作。
+ * 文件按 UTF-8 解析成逻辑行(保留原始字节, 续行合并为一行, 注释和空行原样保留), 修改时只替换变更的行,
+ * 新增的 key 加到末尾, 写临时文件再原子替换, 中途失败不会留下写了一半的文件; 没有变更时不写文件。
+ * 同一个实例可以反复保存, 文件被外部修改后下次保存前会重新加载。
+ *
+ * @author houkangxi
+ */
+public class PropertiesConfig {
+    final File file;
+    // 逻辑行, 按文件中的顺序
+    private final List<Line> lines = new ArrayList<>(256);
+    // key -> 最后一次出现的行 (与 Properties 一致, 后者生效)
+    private final Map<String, Line> key2line = new HashMap<>();
+    private String lineSeparator = System.lineSeparator();
+    // 文件是否以换行结尾
+    private boolean endsWithNewLine = true;
+    private long lastModified, length;
+    boolean escUnicode = true;
+
+    public PropertiesConfig(File file) throws IOException {
+        this.file = file;
+        load();
+    }
+
+    private void load() throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        lines.clear();
+        key2line.clear();
+        lineSeparator = System.lineSeparator();
+        int pos = 0, lineStart = 0;
+        boolean continuation = false, separatorFound = false;
+        while (pos < data.length) {
+            int end = pos;
+            while (end < data.length && data[end] != '\n' && data[end] != '\r') {
+                end++;
+            }
+            int next = end;
+            if (next < data.length && data[next] == '\r') {
+                next++;
+            }
+            if (next < data.length && data[next] == '\n') {
+                next++;
+            }
+            if (!separatorFound && next > end) {
+                lineSeparator = new String(data, end, next - end, StandardCharsets.ISO_8859_1);
+                separatorFound = true;
+            }
+            continuation = PropertiesParser.isContinued(data, pos, end, continuation);
+            if (!continuation || next == data.length) {
+                addLine(Arrays.copyOfRange(data, lineStart, next), PropertiesParser.parseKey(data, lineStart, next - lineStart));
+                lineStart = next;
+                continuation = false;
+            }
+            pos = next;
+        }
+        endsWithNewLine = data.length == 0 || data[data.length - 1] == '\n' || data[data.length - 1] == '\r';
+        lastModified = file.lastModified();
+        length = file.length();
+    }
+
+    private void addLine(byte[] text, String key) {
+        Line line = new Line(text, key);
+        lines.add(line);
+        if (key != null) {
+            key2line.put(key, line);
+        }
+    }
+
+    /**
+     * 文件中 key 的当前值, 没有返回 null
+     */
+    public synchronized String get(String key) {
+        Line line = key2line.get(key);
+        return line == null ? null : PropertiesParser.parse(line.text).get(key);
+    }
+
+    /**
+     * 文件中所有的 key
+     */
+    public synchronized Set<String> keys() {
+        return new TreeSet<>(key2line.keySet());
+    }
+
+    /**
+     * 保存修改到文件: 已有的 key 替换所在行, 新的 key 追加到末尾(前面加上注释)。不会修改传入的 properties;
+     * 所有 key 的值都没变时什么也不写
+     *
+     * @param properties
+     * @param comments
+     * @throws IOException
+     */
+    public synchronized void saveToFile(Properties properties, String comments) throws IOException {
+        if (file.lastModified() != lastModified || file.length() != length) {
+            load();
+        }
+        ConfigSnapshot updates = ConfigSnapshot.of(properties);
+        boolean modified = false;
+        StringBuilder appended = new StringBuilder();
+        List<String> appendedKeys = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            String key = updates.key(i), value = updates.value(i);
+            Line line = key2line.get(key);
+            if (line == null) {
+                appended.append(kv(key, value)).append(lineSeparator);
+                appendedKeys.add(key);
+            } else if (!value.equals(PropertiesParser.parse(line.text).get(key))) {
+                // 续行合并成一行, 保留原来的换行符
+                int n = line.text.length, t = n;
+                while (t > 0 && (line.text[t - 1] == '\n' || line.text[t - 1] == '\r')) {
+                    t--;
+                }
+                String ending = t < n ? new String(line.text, t, n - t, StandardCharsets.ISO_8859_1) : "";
+                line.text = (kv(key, value) + ending).getBytes(StandardCharsets.UTF_8);
+                modified = true;
+            }
+        }
+        if (!modified && appendedKeys.isEmpty()) {
+            // 没有变更时不写文件, 也不追加注释
+            return;
+        }
+        StringBuilder tail = new StringBuilder();
+        if (comments != null && !appendedKeys.isEmpty()) {
+            writeComments(tail, comments, lineSeparator);
+        }
+        tail.append(appended);
+        // 原来最后一行没有换行符, 现在后面有内容了
+        if (!endsWithNewLine && tail.length() > 0 && !lines.isEmpty()) {
+            Line last = lines.get(lines.size() - 1);
+            last.text = concat(last.text, lineSeparator.getBytes(StandardCharsets.ISO_8859_1));
+            endsWithNewLine = true;
+        }
+        appendLines(tail.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            replaceFile();
+        } catch (IOException e) {
+            // 行模型已经修改, 下次保存前重新加载
+            lastModified = -1;
+            throw e;
+        }
+        lastModified = file.lastModified();
+        length = file.length();
+    }
+
+    // 追加的注释和 key 也加入行模型
+    private void appendLines(byte[] data) {
+        int pos = 0;
+        while (pos < data.length) {
+            int next = pos;
+            while (next < data.length && data[next] != '\n') {
+                next++;
+            }
+            next = Math.min(next + 1, data.length);
+            addLine(Arrays.copyOfRange(data, pos, next), PropertiesParser.parseKey(data, pos, next - pos));
+            pos = next;
+        }
+    }
+
+    // 写临时文件, 再原子替换
+    private void replaceFile() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024)) {
+                for (Line line : lines) {
+                    out.write(line.text);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] c = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    private String kv(String key, String val) {
+        key = saveConvert(key, true, escUnicode);
+        /* No need to escape embedded and trailing spaces for value, hence
+         * pass false to flag.
+         */
+        val = saveConvert(val, false, escUnicode);
+        return (key + "=" + val);
+    }
+
+    /*
+     * Converts unicodes to encoded &#92;uxxxx and escapes
+     * special characters with a preceding slash
+     */
+    static String saveConvert(String theString,
+                              boolean escapeSpace,
+                              boolean escapeUnicode) {
+        int len = theString.length();
+        int bufLen = len * 2;
+        if (bufLen < 0) {
+            bufLen = Integer.MAX_VALUE;
+        }
+        StringBuffer outBuffer = new StringBuffer(bufLen);
+
+        for (int x = 0; x < len; x++) {
+            char aChar = theString.charAt(x);
+            // Handle common case first, selecting largest block that
+            // avoids the specials below
+            if ((aChar > 61) && (aChar < 127)) {
+                if (aChar == '\\') {
+                    outBuffer.append('\\');
+                    outBuffer.append('\\');
+                    continue;
+                }
+                outBuffer.append(aChar);
+                continue;
+            }
+            switch (aChar) {
+                case ' ':
+                    if (x == 0 || escapeSpace)
+                        outBuffer.append('\\');
+                    outBuffer.append(' ');
+                    break;
+                case '\t':
+                    outBuffer.append('\\');
+                    outBuffer.append('t');
+                    break;
+                case '\n':
+                    outBuffer.append('\\');
+                    outBuffer.append('n');
+                    break;
+                case '\r':
+                    outBuffer.append('\\');
+                    outBuffer.append('r');
+                    break;
+                case '\f':
+                    outBuffer.append('\\');
+                    outBuffer.append('f');
+                    break;
+                case '=': // Fall through
+                case ':': // Fall through
+                case '#': // Fall through
+                case '!':
+                    outBuffer.append('\\');
+                    outBuffer.append(aChar);
+                    break;
+                default:
+                    if (((aChar < 0x0020) || (aChar > 0x007e)) & escapeUnicode) {
+                        outBuffer.append('\\');
+                        outBuffer.append('u');
+                        outBuffer.append(toHex((aChar >> 12) & 0xF));
+                        outBuffer.append(toHex((aChar >> 8) & 0xF));
+                        outBuffer.append(toHex((aChar >> 4) & 0xF));
+                        outBuffer.append(toHex(aChar & 0xF));
+                    } else {
+                        outBuffer.append(aChar);
+                    }
+            }
+        }
+        return outBuffer.toString();
+    }
+
+    /**
+     * Convert a nibble to a hex character
+     *
+     * @param nibble the nibble to convert.
+     */
+    private static char toHex(int nibble) {
+        return hexDigit[(nibble & 0xF)];
+    }
+
+    /**
+     * A table of hex digits
+     */
+    private static final char[] hexDigit = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    private static void writeComments(StringBuilder bw, String comments, String lineSeparator) {
+        bw.append("#");
+        int len = comments.length();
+        int current = 0;
+        int last = 0;
+        char[] uu = new char[6];
+        uu[0] = '\\';
+        uu[1] = 'u';
+        while (current < len) {
+            char c = comments.charAt(current);
+            if (c > '\u00ff' || c == '\n' || c == '\r') {
+                if (last != current)
+                    bw.append(comments, last, current);
+                if (c > '\u00ff') {
+                    uu[2] = toHex((c >> 12) & 0xf);
+                    uu[3] = toHex((c >> 8) & 0xf);
+                    uu[4] = toHex((c >> 4) & 0xf);
+                    uu[5] = toHex(c & 0xf);
+                    bw.append(uu);
+                } else {
+                    bw.append(lineSeparator);
+                    if (c == '\r' &&
+                            current != len - 1 &&
+                            comments.charAt(current + 1) == '\n') {
+                        current++;
+                    }
+                    if (current == len - 1 ||
+                            (comments.charAt(current + 1) != '#' &&
+                                    comments.charAt(current + 1) != '!'))
+                        bw.append("#");
+                }
+                last = current + 1;
+            }
+            current++;
+        }
+        if (last != current)
+            bw.append(comments, last, current);
+        bw.append(lineSeparator);
+    }
+
+    // 一个逻辑行的原始字节, 包括续行和换行符
+    private static final class Line {
+        byte[] text;
+        final String key;
+
+        Line(byte[] text, String key) {
+            this.text = text;
+            this.key = key;
+        }
+    }
+}
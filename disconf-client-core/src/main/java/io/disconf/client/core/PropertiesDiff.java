@@ -0,0 +1,86 @@
+package io.disconf.client.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于有序快照的 diff: 两个快照同时顺序扫描一遍 (merge-join), 不做哈希查找也不复制 key 集合。
+ * 输入是无序的 Map 时按哈希查找, 只对变更排序, 不需要先把整份配置排成快照。
+ *
+ * @author houkangxi
+ */
+public final class PropertiesDiff {
+
+    private PropertiesDiff() {
+    }
+
+    public static ConfigChangeSet diff(ConfigSnapshot oldSnapshot, ConfigSnapshot newSnapshot) {
+        int oldSize = oldSnapshot.size(), newSize = newSnapshot.size();
+        List<ConfigChange> changes = null;
+        int i = 0, j = 0;
+        while (i < oldSize || j < newSize) {
+            ConfigChange change;
+            if (j == newSize) {
+                change = new ConfigChange(oldSnapshot.key(i), oldSnapshot.value(i++), null, ConfigChange.Type.REMOVED);
+            } else if (i == oldSize) {
+                change = new ConfigChange(newSnapshot.key(j), null, newSnapshot.value(j++), ConfigChange.Type.ADDED);
+            } else {
+                String oldKey = oldSnapshot.key(i), newKey = newSnapshot.key(j);
+                int cmp = oldKey.compareTo(newKey);
+                if (cmp < 0) {
+                    change = new ConfigChange(oldKey, oldSnapshot.value(i++), null, ConfigChange.Type.REMOVED);
+                } else if (cmp > 0) {
+                    change = new ConfigChange(newKey, null, newSnapshot.value(j++), ConfigChange.Type.ADDED);
+                } else {
+                    String oldValue = oldSnapshot.value(i++), newValue = newSnapshot.value(j++);
+                    if (oldValue.equals(newValue)) {
+                        continue;
+                    }
+                    change = new ConfigChange(newKey, oldValue, newValue, ConfigChange.Type.MODIFIED);
+                }
+            }
+            if (changes == null) {
+                changes = new ArrayList<>();
+            }
+            changes.add(change);
+        }
+        return changes == null ? ConfigChangeSet.EMPTY : new ConfigChangeSet(changes);
+    }
+
+    /**
+     * 两个 Map 的 diff, old 为 null 表示全部是新增; 结果同样按 key 排序
+     */
+    public static ConfigChangeSet diff(Map<?, ?> oldMap, Map<?, ?> newMap) {
+        List<ConfigChange> changes = new ArrayList<>();
+        // 新配置里在旧配置中也存在的 key 数
+        int[] matched = new int[1];
+        // forEach 不为每一项创建 Entry, Properties 的 forEach 是加锁的
+        newMap.forEach((key, value) -> {
+            Object oldValue = oldMap == null ? null : oldMap.get(key);
+            String newValue = String.valueOf(value);
+            if (oldValue == null) {
+                changes.add(new ConfigChange(String.valueOf(key), null, newValue, ConfigChange.Type.ADDED));
+                return;
+            }
+            matched[0]++;
+            if (!newValue.equals(String.valueOf(oldValue))) {
+                changes.add(new ConfigChange(String.valueOf(key), String.valueOf(oldValue), newValue, ConfigChange.Type.MODIFIED));
+            }
+        });
+        // 旧配置的 key 都还在时没有删除, 不用再扫一遍
+        if (oldMap != null && matched[0] < oldMap.size()) {
+            oldMap.forEach((key, value) -> {
+                if (!newMap.containsKey(key)) {
+                    changes.add(new ConfigChange(String.valueOf(key), String.valueOf(value), null, ConfigChange.Type.REMOVED));
+                }
+            });
+        }
+        if (changes.isEmpty()) {
+            return ConfigChangeSet.EMPTY;
+        }
+        changes.sort(Comparator.comparing(ConfigChange::getKey));
+        return new ConfigChangeSet(changes);
+    }
+}
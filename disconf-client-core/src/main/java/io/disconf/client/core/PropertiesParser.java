@@ -0,0 +1,341 @@
+package io.disconf.client.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 直接在下载的字节上解析 UTF-8 编码的 properties, 一遍完成 UTF-8 解码和转义处理, 结果直接生成 {@link ConfigSnapshot}。
+ * 语法与 {@link java.util.Properties#load(java.io.Reader)} 一致: # ! 注释, = : 空白分隔, 行尾 \ 续行, \\uXXXX 转义;
+ * 重复的 key 后者生效。不合法的 UTF-8 字节解码为 U+FFFD。
+ * 额外记录每个 key 所在的行号(从 1 开始)。
+ *
+ * @author houkangxi
+ */
+public final class PropertiesParser {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+    private int line = 1;
+    // 解码 key/value 的复用缓冲区
+    private char[] chars = new char[128];
+    private int len;
+
+    private PropertiesParser(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.limit = buf.limit();
+    }
+
+    public static ConfigSnapshot parse(byte[] data) {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    public static ConfigSnapshot parse(byte[] data, int offset, int length) {
+        return parse(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * 解析 buffer 的 position 到 limit 之间的内容, 不改变 buffer 的 position
+     */
+    public static ConfigSnapshot parse(ByteBuffer buffer) {
+        return new PropertiesParser(buffer).parse();
+    }
+
+    /**
+     * 一个逻辑行的 key, 空行和注释行返回 null
+     */
+    static String parseKey(byte[] data, int offset, int length) {
+        PropertiesParser parser = new PropertiesParser(ByteBuffer.wrap(data, offset, length));
+        return parser.skipBlankAndComments() ? parser.readKey() : null;
+    }
+
+    /**
+     * [start, end) 这一物理行(不含换行符)之后是否还接着续行:
+     * 逻辑行开头的注释和空行不续行, 否则看行尾 '\' 的个数是否为奇数
+     *
+     * @param inContinuation - 这一行本身是否是上一行的续行
+     */
+    static boolean isContinued(byte[] data, int start, int end, boolean inContinuation) {
+        if (!inContinuation) {
+            int i = start;
+            while (i < end && (data[i] == ' ' || data[i] == '\t' || data[i] == '\f')) {
+                i++;
+            }
+            if (i == end || data[i] == '#' || data[i] == '!') {
+                return false;
+            }
+        }
+        int backslashes = 0;
+        for (int i = end - 1; i >= start && data[i] == '\\'; i--) {
+            backslashes++;
+        }
+        return (backslashes & 1) == 1;
+    }
+
+    private ConfigSnapshot parse() {
+        int n = 0;
+        String[] keys = new String[16];
+        String[] values = new String[16];
+        int[] lines = new int[16];
+        // 跳过 UTF-8 BOM
+        if (limit - pos >= 3 && (buf.get(pos) & 0xFF) == 0xEF && (buf.get(pos + 1) & 0xFF) == 0xBB
+                && (buf.get(pos + 2) & 0xFF) == 0xBF) {
+            pos += 3;
+        }
+        while (skipBlankAndComments()) {
+            int keyLine = line;
+            String key = readKey();
+            skipSeparator();
+            String value = readValue();
+            if (n == keys.length) {
+                keys = Arrays.copyOf(keys, n << 1);
+                values = Arrays.copyOf(values, n << 1);
+                lines = Arrays.copyOf(lines, n << 1);
+            }
+            keys[n] = key;
+            values[n] = value;
+            lines[n] = keyLine;
+            n++;
+        }
+        return sort(keys, values, lines, n);
+    }
+
+    // 按 key 排序, 重复的 key 保留最后一个
+    private static ConfigSnapshot sort(String[] keys, String[] values, int[] lines, int n) {
+        if (n == 0) {
+            return ConfigSnapshot.EMPTY;
+        }
+        int i = 1;
+        while (i < n && keys[i - 1].compareTo(keys[i]) < 0) {
+            i++;
+        }
+        if (i == n) {
+            // 已经有序且没有重复, 不用排序
+            return new ConfigSnapshot(Arrays.copyOf(keys, n), Arrays.copyOf(values, n), Arrays.copyOf(lines, n));
+        }
+        Integer[] order = new Integer[n];
+        for (i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // 稳定排序, 相同 key 保持出现顺序
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        String[] sortedKeys = new String[n];
+        String[] sortedValues = new String[n];
+        int[] sortedLines = new int[n];
+        int m = 0;
+        for (i = 0; i < n; i++) {
+            int idx = order[i];
+            if (m > 0 && sortedKeys[m - 1].equals(keys[idx])) {
+                m--;
+            }
+            sortedKeys[m] = keys[idx];
+            sortedValues[m] = values[idx];
+            sortedLines[m] = lines[idx];
+            m++;
+        }
+        if (m < n) {
+            sortedKeys = Arrays.copyOf(sortedKeys, m);
+            sortedValues = Arrays.copyOf(sortedValues, m);
+            sortedLines = Arrays.copyOf(sortedLines, m);
+        }
+        return new ConfigSnapshot(sortedKeys, sortedValues, sortedLines);
+    }
+
+    // 跳过空行和注释行, 停在下一个 key 的第一个字节; 没有更多内容返回 false
+    private boolean skipBlankAndComments() {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == ' ' || b == '\t' || b == '\f') {
+                pos++;
+            } else if (b == '\r' || b == '\n') {
+                newLine(b);
+            } else if (b == '#' || b == '!') {
+                // 注释行不续行
+                while (pos < limit && buf.get(pos) != '\r' && buf.get(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readKey() {
+        len = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == '=' || b == ':' || b == ' ' || b == '\t' || b == '\f' || b == '\r' || b == '\n') {
+                break;
+            }
+            if (b == '\\') {
+                pos++;
+                readEscape();
+            } else {
+                readChar(b);
+            }
+        }
+        return new String(chars, 0, len);
+    }
+
+    // 跳过 key 后的空白, 至多一个 = 或 :, 以及其后的空白
+    private void skipSeparator() {
+        boolean separator = false;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == ' ' || b == '\t' || b == '\f') {
+                pos++;
+            } else if (!separator && (b == '=' || b == ':')) {
+                separator = true;
+                pos++;
+            } else if (b == '\\' && isLineEnd(pos + 1)) {
+                pos++;
+                continueLine();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private String readValue() {
+        len = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == '\r' || b == '\n') {
+                break;
+            }
+            if (b == '\\') {
+                pos++;
+                readEscape();
+            } else {
+                readChar(b);
+            }
+        }
+        return len == 0 ? "" : new String(chars, 0, len);
+    }
+
+    // pos 指向 '\' 之后
+    private void readEscape() {
+        if (pos >= limit) {
+            return;
+        }
+        byte b = buf.get(pos);
+        switch (b) {
+            case '\r':
+            case '\n':
+                continueLine();
+                return;
+            case 't':
+                pos++;
+                append('\t');
+                return;
+            case 'n':
+                pos++;
+                append('\n');
+                return;
+            case 'r':
+                pos++;
+                append('\r');
+                return;
+            case 'f':
+                pos++;
+                append('\f');
+                return;
+            case 'u':
+                pos++;
+                append(readUnicode());
+                return;
+            default:
+                readChar(b);
+        }
+    }
+
+    private char readUnicode() {
+        if (limit - pos < 4) {
+            throw new IllegalArgumentException("Malformed \\uxxxx encoding at line " + line);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf.get(pos++), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Malformed \\uxxxx encoding at line " + line);
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    // 续行: 跳过换行和下一行开头的空白
+    private void continueLine() {
+        newLine(buf.get(pos));
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\t' && b != '\f') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    private boolean isLineEnd(int i) {
+        return i < limit && (buf.get(i) == '\r' || buf.get(i) == '\n');
+    }
+
+    // pos 指向 \r 或 \n, \r\n 算一行
+    private void newLine(byte b) {
+        pos++;
+        if (b == '\r' && pos < limit && buf.get(pos) == '\n') {
+            pos++;
+        }
+        line++;
+    }
+
+    // 解码一个 UTF-8 字符, pos 指向首字节
+    private void readChar(byte b) {
+        pos++;
+        if (b >= 0) {
+            append((char) b);
+            return;
+        }
+        int lead = b & 0xFF;
+        int need;
+        int cp;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            need = 1;
+            cp = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            need = 2;
+            cp = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            need = 3;
+            cp = lead & 0x07;
+        } else {
+            append(REPLACEMENT);
+            return;
+        }
+        for (int i = 0; i < need; i++) {
+            if (pos >= limit || (buf.get(pos) & 0xC0) != 0x80) {
+                append(REPLACEMENT);
+                return;
+            }
+            cp = (cp << 6) | (buf.get(pos++) & 0x3F);
+        }
+        if ((need == 2 && (cp < 0x800 || Character.isSurrogate((char) cp))) || (need == 3 && (cp < 0x10000 || cp > 0x10FFFF))) {
+            append(REPLACEMENT);
+        } else if (need == 3) {
+            append(Character.highSurrogate(cp));
+            append(Character.lowSurrogate(cp));
+        } else {
+            append((char) cp);
+        }
+    }
+
+    private void append(char c) {
+        if (len == chars.length) {
+            chars = Arrays.copyOf(chars, len << 1);
+        }
+        chars[len++] = c;
+    }
+}
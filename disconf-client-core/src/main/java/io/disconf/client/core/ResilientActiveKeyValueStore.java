@@ -40,6 +40,14 @@ public class ResilientActiveKeyValueStore extends ConnectionWatcher {
      */
     public void createEphemeralNode(String path, String value, CreateMode createMode)
             throws InterruptedException, KeeperException {
+        createEphemeralNode(path, value == null ? null : value.getBytes(CHARSET), createMode);
+    }
+
+    /**
+     * 同 {@link #createEphemeralNode(String, String, CreateMode)}, 数据为字节(如压缩后的数据)
+     */
+    public void createEphemeralNode(String path, byte[] value, CreateMode createMode)
+            throws InterruptedException, KeeperException {
 
         int retries = 0;
         KeeperException exception = null;
@@ -47,9 +55,9 @@ public class ResilientActiveKeyValueStore extends ConnectionWatcher {
             try {
                 Stat stat = zk.exists(path, false);
                 if (stat == null) {
-                    zk.create(path, value.getBytes(CHARSET), Ids.OPEN_ACL_UNSAFE, createMode);
+                    zk.create(path, value, Ids.OPEN_ACL_UNSAFE, createMode);
                 } else if (value != null) {
-                    zk.setData(path, value.getBytes(CHARSET), stat.getVersion());
+                    zk.setData(path, value, stat.getVersion());
                 }
                 LOGGER.info("创建临时节点成功: path = " + path + " , stat = " + stat);
                 return;
@@ -66,4 +74,4 @@ public class ResilientActiveKeyValueStore extends ConnectionWatcher {
         throw exception;
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,630 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import io.disconf.client.metrics.UpdateTrace;
+import io.disconf.client.metrics.UpdateTracer;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ * Zookeeper 节点监听，主要负责节点数据变更的处理。
+ *
+ * @author houkangxi
+ */
+public class ZookeeperWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ZookeeperWatcher.class);
+    protected final ResilientActiveKeyValueStore store;
+    protected final Map<String, URL> nodesResource;
+    protected final ConfigChangeHandler changeHandler;
+    protected final String fileDownloadDir;
+    protected final String classpathDir;
+    protected Collection<ConfigFileUpdateCallback> configFileUpdateCallbacks;
+    protected final ClusterMembership clusterMembership;
+    protected final LayeredProperties layeredProperties;
+    // 配置项的优先级, 按声明顺序, 后面的覆盖前面的
+    protected final Map<String, Integer> nodePrecedence = new HashMap<>();
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+    private final UpdateTracer tracer = UpdateTracer.get();
+    protected final DeltaDownloader deltaDownloader = new DeltaDownloader();
+    // 在线状态数据的压缩, 默认不压缩以兼容 web 控制台; 超过阈值才压缩
+    private final Compression presenceCompression = Compression.forName(System.getProperty("disconf.zk.compression"));
+    private final int presenceCompressionThreshold = Integer.getInteger("disconf.zk.compression.threshold", 1024);
+    // 下载和回调的线程模型, JDK 21+ 默认虚拟线程
+    protected final ExecutorStrategy executorStrategy = ExecutorStrategy.get();
+    // 多个配置项并行下载、写文件
+    private final ExecutorService downloadExecutor = executorStrategy.newExecutor("disconf-download",
+            Integer.getInteger("disconf.download.threads", 4));
+    // 回调在单独的线程池上执行, 不阻塞 ZK 事件线程
+    protected final CallbackDispatcher callbackDispatcher = new CallbackDispatcher(executorStrategy,
+            Integer.getInteger("disconf.callback.threads", 2), Long.getLong("disconf.callback.timeout", 30000));
+    // key 级别的变更监听
+    protected volatile ConfigChangeNotifier changeNotifier = new ConfigChangeNotifier();
+    // 每个配置项最新的本地文件, 回调注册时补发通知
+    private final Map<String, File> localFiles = new ConcurrentHashMap<>();
+    // 节点 -> 本地文件名; 多个命名空间有同名配置项时, 优先级低的加上命名空间前缀
+    private final Map<String, String> localFileNames = new HashMap<>();
+    // 命名空间 -> 版本, 该命名空间的配置项每次更新递增
+    private final Map<String, AtomicLong> namespaceVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 注册回调, 并把启动时已经下载的配置文件通知一次
+     */
+    public void setConfigFileUpdateCallbacks(Collection<ConfigFileUpdateCallback> configFileUpdateCallbacks) {
+        logger.info("setConfigFileUpdateCallbacks: {}", configFileUpdateCallbacks);
+        this.configFileUpdateCallbacks = configFileUpdateCallbacks;
+        callbackDispatcher.setCallbacks(configFileUpdateCallbacks);
+        for (File configFile : localFiles.values()) {
+            callbackDispatcher.dispatch(configFile);
+        }
+    }
+
+    public ZookeeperWatcher(String zkHosts, Map<String, URL> nodesResource, ConfigChangeHandler changeHandler,
+                            String fileDownloadDir) {
+        this(zkHosts, nodesResource, changeHandler, fileDownloadDir, new LayeredProperties());
+    }
+
+    /**
+     * @param nodesResource     - 节点到下载地址, 按优先级从低到高排列
+     * @param changeHandler     - 应用配置变更, 如重新注入 Spring bean
+     * @param layeredProperties - 分层配置, 每个 properties 配置项作为其中一层
+     */
+    public ZookeeperWatcher(String zkHosts, Map<String, URL> nodesResource, ConfigChangeHandler changeHandler,
+                            String fileDownloadDir, LayeredProperties layeredProperties) {
+        URL rootClasspath = getClass().getClassLoader().getResource("");
+        // 以 jar 方式运行时没有 classpath 目录, 只保留下载目录
+        classpathDir = rootClasspath != null ? rootClasspath.getPath() : fileDownloadDir;
+        this.nodesResource = nodesResource;
+        this.fileDownloadDir = fileDownloadDir;
+        this.changeHandler = changeHandler;
+        this.layeredProperties = layeredProperties;
+        int precedence = 0;
+        Set<String> fileNames = new HashSet<>();
+        List<String> nodes = new ArrayList<>(nodesResource.keySet());
+        for (String node : nodes) {
+            nodePrecedence.put(node, precedence++);
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            String node = nodes.get(i), fileName = node.substring(node.lastIndexOf('/') + 1);
+            String namespace = ConfigNamespace.nameOf(node);
+            localFileNames.put(node, fileNames.add(fileName) || namespace == null ? fileName : namespace + '_' + fileName);
+        }
+        store = new ResilientActiveKeyValueStore() {
+            @Override
+            public void process(WatchedEvent event) {
+                logger.info("EVENT: {}", event);
+                super.process(event);
+                if (event.getType() == Event.EventType.NodeDataChanged) {
+                    String path = event.getPath();
+                    long start = System.nanoTime();
+                    // 先重新注册 watch, 同时拿到本次变更的 mzxid
+                    Stat stat = watchNode(path);
+                    UpdateTrace trace = tracer.begin(path, stat == null ? -1 : stat.getMzxid());
+                    try {
+                        doUpdateSingle(path);// 节点数据变更处理
+                    } finally {
+                        trace.finish();
+                    }
+                    metrics.recordSince(DisconfMetrics.PROPAGATION, path, start);
+                }
+                if (event.getState() == Event.KeeperState.Expired) {
+                    store.reconnect();
+                    watch();
+                    clusterMembership.refresh();
+                }
+            }
+        };
+        clusterMembership = new ClusterMembership(store, nodesResource.keySet().iterator().next());
+        try {
+            store.connect(zkHosts);
+            watch();
+        } catch (Exception e) {
+            logger.error("Fail to Connect zk: " + zkHosts, e);
+        }
+        // 启动时每个配置项只下载一次 (并行): 复制到 classpath, 再上报在线状态; 按顺序作为配置层
+        List<ConfigSnapshot> snapshots = fanOut(nodes, this::loadInitial);
+        for (int i = 0; i < nodes.size(); i++) {
+            if (snapshots.get(i) != null) {
+                layeredProperties.putLayer(nodes.get(i), nodePrecedence.get(nodes.get(i)), snapshots.get(i));
+            }
+        }
+        increaseNamespaceVersions(nodesResource.keySet());
+        clusterMembership.refresh();
+    }
+
+    private ConfigSnapshot loadInitial(String path) {
+        ConfigSnapshot snapshot = null;
+        try {
+            DeltaDownloader.Download download = download(path);
+            File configFile = copyToLocal(path, download.getData(), classpathDir);
+            snapshot = parse(path, download);
+            deltaDownloader.remember(path, configFile, snapshot);
+            // 此时还没有注册回调, 注册时再通知
+            localFiles.put(path, configFile);
+        } catch (Exception e) {
+            logger.warn("复制到本地失败:" + path, e);
+        }
+        watchByThisIp(path, snapshot);
+        return snapshot;
+    }
+
+    // 多个配置项在 downloadExecutor 上并行处理, 结果按节点顺序返回; 只有一个时直接在当前线程执行
+    private <T> List<T> fanOut(List<String> nodes, Function<String, T> task) {
+        List<T> results = new ArrayList<>(nodes.size());
+        if (nodes.size() <= 1) {
+            for (String node : nodes) {
+                results.add(task.apply(node));
+            }
+            return results;
+        }
+        UpdateTrace trace = UpdateTrace.current();
+        List<Future<T>> futures = new ArrayList<>(nodes.size());
+        for (String node : nodes) {
+            try {
+                futures.add(downloadExecutor.submit(() -> {
+                    if (trace != null) {
+                        trace.attach();
+                    }
+                    try {
+                        return task.apply(node);
+                    } finally {
+                        if (trace != null) {
+                            trace.detach();
+                        }
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // 已经关闭
+                futures.add(CompletableFuture.completedFuture(task.apply(node)));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            T result = null;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.error("fail to load config: " + nodes.get(i), e.getCause());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    void watch() {
+        for (String item : nodesResource.keySet()) {
+            watchNode(item);
+        }
+    }
+
+    private Stat watchNode(String item) {
+        try {
+            Stat stat = new Stat();
+            store.getZk().getData(item, store, stat);
+            logger.info("watchNode: " + item);
+            return stat;
+        } catch (Exception e) {
+            logger.error("Fail to Connect zk: " + item, e);
+            return null;
+        }
+    }
+
+    // 让web面板上可以看到本机的在线状态
+    private void watchByThisIp(String path, ConfigSnapshot snapshot) {
+        Map<Object, Object> kvs = snapshot != null ? snapshot.toProperties() : Collections.emptyMap();
+        byte[] data = toJsonBytes(kvs);
+        if (data.length > presenceCompressionThreshold && presenceCompression.isAvailable()) {
+            data = presenceCompression.wrap(data);
+        }
+        makeNodeTempPath(path, data);
+    }
+
+    // 在线状态只有字符串 key/value, 不需要引入 JSON 库
+    static byte[] toJsonBytes(Map<?, ?> kvs) {
+        StringBuilder json = new StringBuilder(kvs.size() * 32 + 2).append('{');
+        for (Map.Entry<?, ?> entry : kvs.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendJsonString(json, String.valueOf(entry.getKey())).append(':');
+            appendJsonString(json, String.valueOf(entry.getValue()));
+        }
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * 读取某个客户端在线节点的数据(它持有的配置, JSON), 压缩过的自动解压
+     *
+     * @param member - 在线节点名, 见 {@link ClusterMembership.Snapshot#getMembers()}
+     */
+    public String getPresence(String path, String member) throws Exception {
+        byte[] data = store.getZk().getData(path + '/' + member, false, null);
+        return data == null ? null : new String(Compression.unwrap(data), StandardCharsets.UTF_8);
+    }
+
+    public static final boolean isProperties(String node) {
+        return node.endsWith(".properties");
+    }
+
+    private static final String HOST_ADDRESS;
+
+    static {
+        String hostAddress = "";
+        try {
+            InetAddress addr = InetAddress.getLocalHost();
+            hostAddress = addr.getHostAddress();
+        } catch (UnknownHostException e) {
+        }
+        HOST_ADDRESS = hostAddress;
+    }
+
+    // 客户端的指纹 -- 唯一标识一个客户端(一个进程里通常只有一个)
+    private final String fingerPrint = HOST_ADDRESS + '_' + UUID.randomUUID();
+
+    protected void makeNodeTempPath(String path, byte[] data) {
+        String mainTypeFullStr = path + '/' + fingerPrint;
+        try {
+            store.createEphemeralNode(mainTypeFullStr, data, CreateMode.EPHEMERAL);
+        } catch (Exception e) {
+            logger.error("cannot create: " + mainTypeFullStr, e);
+        }
+    }
+
+    // 获取集群IP列表, 读取的是 child watch 维护的缓存快照
+    public String[] getClusterHosts() {
+        return clusterMembership.getSnapshot().getHosts();
+    }
+
+    public ClusterMembership getClusterMembership() {
+        return clusterMembership;
+    }
+
+    // 主动刷新接口
+    public void refreshConfigs() {
+        logger.info("refreshConfigs...");
+        UpdateTrace trace = tracer.begin("refresh", -1);
+        try {
+            doUpdate(nodesResource.keySet());
+        } finally {
+            trace.finish();
+        }
+    }
+
+    // 更新多个节点
+    private void doUpdate(Collection<String> nodes) {
+        logger.info("doUpdate config items: {}", nodes);
+        update(fanOut(new ArrayList<>(nodes), this::prepareNode));
+    }
+
+    // 更新单一节点
+    private void doUpdateSingle(String node) {
+        UpdateTrace trace = UpdateTrace.current();
+        logger.info("doUpdate config item: {}, updateId={}", node, trace == null ? null : trace.getId());
+        update(Collections.singletonList(prepareNode(node)));
+    }
+
+    /*
+     * 两阶段更新:
+     * 1. 准备: 下载、解析 (prepareNode), 算出新的合并结果, 交给 changeHandler.prepare 做类型转换和校验;
+     * 2. 提交: 准备成功才写文件, 一次切换所有配置层, 注入, 再通知回调和监听器。
+     * 准备和提交持有 LayeredProperties 的更新锁, 与本地配置文件的更新串行。
+     * 准备失败时整批放弃, 文件、配置层和 bean 都保持原样。
+     */
+    private void update(List<Prepared> prepared) {
+        List<Prepared> items = new ArrayList<>(prepared.size());
+        List<LayeredProperties.Layer> layers = new ArrayList<>(prepared.size());
+        StringBuilder item = new StringBuilder();
+        for (Prepared p : prepared) {
+            if (p == null) {
+                continue;
+            }
+            items.add(p);
+            if (p.snapshot != null) {
+                layers.add(new LayeredProperties.Layer(p.node, nodePrecedence.get(p.node), p.snapshot));
+                item.append(item.length() == 0 ? "" : ",").append(p.node);
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        List<File> files;
+        // 与本地配置的更新串行, 从准备到注入不会交叉
+        Lock updateLock = layeredProperties.getUpdateLock();
+        updateLock.lock();
+        try {
+            LayeredProperties.Staged staged = null;
+            if (!layers.isEmpty()) {
+                long diffStart = System.nanoTime();
+                staged = layeredProperties.stage(layers);
+                UpdateTrace.mark(UpdateTrace.DIFF, String.valueOf(staged.getChanges().size()), diffStart);
+                if (!prepare(item.toString(), staged)) {
+                    return;
+                }
+            }
+            Map<String, Prepared> byNode = new HashMap<>();
+            List<String> nodes = new ArrayList<>(items.size());
+            for (Prepared p : items) {
+                byNode.put(p.node, p);
+                nodes.add(p.node);
+            }
+            files = fanOut(nodes, node -> write(byNode.get(node)));
+            if (staged != null) {
+                // 替换对应的配置层, 再交给 changeHandler 应用 (如 Spring bean 的 @Value 注解的字段或方法)
+                ConfigChangeSet changes = layeredProperties.commit(staged);
+                ConfigChangeSet applied = changeHandler.applyChanges(changes, layeredProperties);
+                long version = layeredProperties.getVersion();
+                metrics.gauge(DisconfMetrics.SNAPSHOT_VERSION, version);
+                List<String> layerNames = new ArrayList<>(layers.size());
+                for (LayeredProperties.Layer layer : layers) {
+                    layerNames.add(layer.getName());
+                }
+                increaseNamespaceVersions(layerNames);
+                changeNotifier.fire(item.toString(), version, applied);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Prepared p = items.get(i);
+            if (files.get(i) != null) {
+                notifyCallback(p.node, files.get(i));
+            }
+            // 更新后修改临时节点数据
+            watchByThisIp(p.node, p.snapshot);
+        }
+    }
+
+    // 准备阶段的类型转换和校验, 失败时记录并返回 false
+    private boolean prepare(String item, LayeredProperties.Staged staged) {
+        if (staged.getChanges().isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            changeHandler.prepare(staged);
+        } catch (Exception e) {
+            metrics.increment(DisconfMetrics.UPDATE_REJECTED, item, 1);
+            logger.error("配置校验失败, 本次更新不生效: " + item, e);
+            UpdateTrace trace = UpdateTrace.current();
+            if (trace != null) {
+                trace.fail("Rejected: " + e);
+            }
+            return false;
+        }
+        metrics.recordSince(DisconfMetrics.PREPARE, item, start);
+        UpdateTrace.mark(UpdateTrace.PREPARE, item, start);
+        return true;
+    }
+
+    private void increaseNamespaceVersions(Collection<String> nodes) {
+        Set<String> namespaces = new HashSet<>();
+        for (String node : nodes) {
+            String namespace = ConfigNamespace.nameOf(node);
+            if (namespace != null && namespaces.add(namespace)) {
+                namespaceVersions.computeIfAbsent(namespace, k -> new AtomicLong()).incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 命名空间 (app_version_env) 的配置版本, 该命名空间的配置项每次更新递增; 没有订阅返回 0
+     */
+    public long getNamespaceVersion(String namespace) {
+        AtomicLong version = namespaceVersions.get(namespace);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 所有命名空间的配置版本
+     */
+    public Map<String, Long> getNamespaceVersions() {
+        Map<String, Long> versions = new TreeMap<>();
+        namespaceVersions.forEach((namespace, version) -> versions.put(namespace, version.get()));
+        return versions;
+    }
+
+    public ConfigChangeNotifier getChangeNotifier() {
+        return changeNotifier;
+    }
+
+    /**
+     * 配置变更的响应式流 (快照版本和 key 级别的变更), 慢的订阅者只收到合并后的最新值
+     */
+    public ConfigStream getConfigStream() {
+        return changeNotifier.getStream();
+    }
+
+    /**
+     * 与其他来源(如本地配置文件)共用一个监听器注册表
+     */
+    public void setChangeNotifier(ConfigChangeNotifier changeNotifier) {
+        this.changeNotifier = changeNotifier;
+    }
+
+    /**
+     * 本进程已应用的配置版本, 每次合并结果变化时递增
+     */
+    public long getSnapshotVersion() {
+        return layeredProperties.getVersion();
+    }
+
+    public LayeredProperties getLayeredProperties() {
+        return layeredProperties;
+    }
+
+    public DeltaDownloader getDeltaDownloader() {
+        return deltaDownloader;
+    }
+
+    // 下载、保存配置项, 返回解析后的快照; 非 properties 文件或者失败时返回 null
+    private Prepared prepareNode(String node) {
+        DeltaDownloader.Download download;
+        try {
+            download = download(node);
+        } catch (IOException e) {
+            logger.error("DownloadError: " + node, e);
+            UpdateTrace trace = UpdateTrace.current();
+            if (trace != null) {
+                trace.fail("DownloadError: " + e);
+            }
+            return null;
+        }
+        ConfigSnapshot snapshot = parse(node, download);
+        if (snapshot == null && isProperties(node)) {
+            // 解析失败的 properties 不写到本地, 保留上一个版本
+            metrics.increment(DisconfMetrics.UPDATE_REJECTED, node, 1);
+            UpdateTrace trace = UpdateTrace.current();
+            if (trace != null) {
+                trace.fail("ConfLoadError: " + node);
+            }
+            return null;
+        }
+        return new Prepared(node, download.getData(), snapshot);
+    }
+
+    // 写到下载目录和 classpath, 作为下次增量下载的基准
+    private File write(Prepared prepared) {
+        String node = prepared.node;
+        try {
+            long writeStart = System.nanoTime();
+            File downloadDirFile = copyToLocal(node, prepared.data, fileDownloadDir);
+            // copy to classpath:
+            File classpathFile = new File(classpathDir, downloadDirFile.getName());
+            if (!classpathFile.equals(downloadDirFile)) {
+                Files.copy(downloadDirFile.toPath(), classpathFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            UpdateTrace.mark(UpdateTrace.WRITE, node, writeStart);
+            deltaDownloader.remember(node, downloadDirFile, prepared.snapshot);
+            return downloadDirFile;
+        } catch (Exception e) {
+            logger.error("fail to write config: " + node, e);
+            return null;
+        }
+    }
+
+    private DeltaDownloader.Download download(String node) throws IOException {
+        long start = System.nanoTime();
+        DeltaDownloader.Download download = deltaDownloader.download(node, nodesResource.get(node));
+        metrics.recordSince(DisconfMetrics.DOWNLOAD, node, start);
+        UpdateTrace.mark(UpdateTrace.DOWNLOAD, node, start);
+        return download;
+    }
+
+    // 解析 properties 配置项, 其他文件返回 null
+    private ConfigSnapshot parse(String node, DeltaDownloader.Download download) {
+        if (!isProperties(node)) {
+            return null;
+        }
+        if (download.getSnapshot() != null) {
+            // 应用补丁时已经解析过了
+            return download.getSnapshot();
+        }
+        long parseStart = System.nanoTime();
+        ConfigSnapshot snapshot;
+        try {
+            snapshot = PropertiesParser.parse(download.getData());
+        } catch (Exception e) {
+            logger.warn("ConfLoadError: " + node, e);
+            return null;
+        }
+        UpdateTrace.mark(UpdateTrace.PARSE, node, parseStart);
+        return snapshot;
+    }
+
+    private File copyToLocal(String node, byte[] data, String configFileDir) {
+        String item = localFileNames.get(node);
+        File configFile = new File(configFileDir, item);
+        try (FileOutputStream fileOutputStream = new FileOutputStream(configFile)) {
+            // copy 文件到 disconf 下载目录
+            fileOutputStream.write(data);
+        } catch (Exception e) {
+            logger.error("fail to Copy config: " + item, e);
+        }
+        return configFile;
+    }
+
+    // 下载、解析好还没有写到本地的配置项
+    private static final class Prepared {
+        final String node;
+        final byte[] data;
+        // properties 配置项解析后的快照, 其他文件为 null
+        final ConfigSnapshot snapshot;
+
+        Prepared(String node, byte[] data, ConfigSnapshot snapshot) {
+            this.node = node;
+            this.data = data;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private void notifyCallback(String node, File configFile) {
+        localFiles.put(node, configFile);
+        // 通知用户接口, 异步执行
+        callbackDispatcher.dispatch(configFile);
+    }
+
+    public CallbackDispatcher getCallbackDispatcher() {
+        return callbackDispatcher;
+    }
+
+    /**
+     * 关闭 ZK 会话, 临时节点随之删除
+     */
+    public void close() {
+        downloadExecutor.shutdownNow();
+        callbackDispatcher.close();
+        clusterMembership.close();
+        try {
+            store.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
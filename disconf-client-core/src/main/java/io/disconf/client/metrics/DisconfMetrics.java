@@ -0,0 +1,217 @@
+package io.disconf.client.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 配置更新链路的指标注册表, 进程内单例, 注册为 JMX MXBean,
+ * 同时转发给所有通过 SPI 加载的 {@link MetricsReporter}。
+ *
+ * @author houkangxi
+ */
+public class DisconfMetrics implements DisconfMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(DisconfMetrics.class);
+
+    // ZK 事件到 bean 更新完成的耗时, tag = 节点
+    public static final String PROPAGATION = "propagation";
+    // 下载耗时, tag = 节点
+    public static final String DOWNLOAD = "download";
+    // 下载字节数, tag = 节点
+    public static final String DOWNLOAD_BYTES = "download.bytes";
+    // 每次变更的 key 数
+    public static final String DIFF_KEYS = "diff.keys";
+    // 准备阶段 (类型转换、校验) 耗时, tag = 配置项
+    public static final String PREPARE = "prepare";
+    // 校验失败被拒绝的更新次数, tag = 配置项
+    public static final String UPDATE_REJECTED = "update.rejected";
+    // 重新注入耗时, tag = bean 类名
+    public static final String INJECT = "inject";
+    // 回调耗时, tag = 回调类名
+    public static final String CALLBACK = "callback";
+    // 回调抛异常次数, tag = 回调类名
+    public static final String CALLBACK_ERROR = "callback.error";
+    // 回调超时次数, tag = 回调类名
+    public static final String CALLBACK_TIMEOUT = "callback.timeout";
+    // 回调线程池满被拒绝的次数, tag = 回调类名
+    public static final String CALLBACK_REJECTED = "callback.rejected";
+    // ConfigChangeListener 耗时, tag = 监听器类名
+    public static final String LISTENER = "listener";
+    // ConfigChangeListener 抛异常次数, tag = 监听器类名
+    public static final String LISTENER_ERROR = "listener.error";
+    // refresh 作用域的 bean 重建耗时, tag = bean 名
+    public static final String REFRESH = "refresh";
+    // refresh 作用域的 bean 重建失败次数, tag = bean 名
+    public static final String REFRESH_ERROR = "refresh.error";
+    // 启动时在后置处理器里的耗时, tag = 阶段
+    public static final String STARTUP = "startup";
+    // zk 重连次数
+    public static final String RECONNECT = "zk.reconnect";
+    // 当前配置快照版本
+    public static final String SNAPSHOT_VERSION = "snapshot.version";
+
+    private static final DisconfMetrics INSTANCE = new DisconfMetrics();
+
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final List<MetricsReporter> reporters = new ArrayList<>();
+
+    public static DisconfMetrics get() {
+        return INSTANCE;
+    }
+
+    private DisconfMetrics() {
+        for (MetricsReporter reporter : ServiceLoader.load(MetricsReporter.class, DisconfMetrics.class.getClassLoader())) {
+            logger.info("MetricsReporter: {}", reporter);
+            reporters.add(reporter);
+        }
+        registerMBean();
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("io.disconf.client:type=Metrics");
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // 同一个 JVM 里多个 classloader (如 tomcat 多应用)
+                server.registerMBean(this, new ObjectName("io.disconf.client:type=Metrics,id=" + System.identityHashCode(this)));
+            }
+        } catch (Exception e) {
+            logger.warn("Fail to register metrics MBean", e);
+        }
+    }
+
+    public void recordTime(String name, String tag, long nanos) {
+        stats(name, tag).add(nanos / 1e6);
+        for (MetricsReporter reporter : reporters) {
+            try {
+                reporter.recordTime(name, tag, nanos);
+            } catch (Exception e) {
+                logger.debug("reporter error", e);
+            }
+        }
+    }
+
+    public void recordValue(String name, String tag, long value) {
+        stats(name, tag).add(value);
+        for (MetricsReporter reporter : reporters) {
+            try {
+                reporter.recordValue(name, tag, value);
+            } catch (Exception e) {
+                logger.debug("reporter error", e);
+            }
+        }
+    }
+
+    public void increment(String name, String tag, long delta) {
+        counters.computeIfAbsent(key(name, tag), k -> new LongAdder()).add(delta);
+        for (MetricsReporter reporter : reporters) {
+            try {
+                reporter.increment(name, tag, delta);
+            } catch (Exception e) {
+                logger.debug("reporter error", e);
+            }
+        }
+    }
+
+    public void gauge(String name, long value) {
+        gauges.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+        for (MetricsReporter reporter : reporters) {
+            try {
+                reporter.gauge(name, value);
+            } catch (Exception e) {
+                logger.debug("reporter error", e);
+            }
+        }
+    }
+
+    /**
+     * 记录从 startNanos 到现在的耗时
+     */
+    public void recordSince(String name, String tag, long startNanos) {
+        recordTime(name, tag, System.nanoTime() - startNanos);
+    }
+
+    private Stats stats(String name, String tag) {
+        return stats.computeIfAbsent(key(name, tag), k -> new Stats());
+    }
+
+    private static String key(String name, String tag) {
+        return tag == null ? name : name + '[' + tag + ']';
+    }
+
+    @Override
+    public Map<String, MetricStats> getStats() {
+        TreeMap<String, MetricStats> map = new TreeMap<>();
+        stats.forEach((k, v) -> map.put(k, v.snapshot()));
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        TreeMap<String, Long> map = new TreeMap<>();
+        counters.forEach((k, v) -> map.put(k, v.sum()));
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        TreeMap<String, Long> map = new TreeMap<>();
+        gauges.forEach((k, v) -> map.put(k, v.get()));
+        return map;
+    }
+
+    @Override
+    public long getReconnectCount() {
+        LongAdder adder = counters.get(RECONNECT);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Override
+    public long getSnapshotVersion() {
+        AtomicLong v = gauges.get(SNAPSHOT_VERSION);
+        return v == null ? 0 : v.get();
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+        counters.clear();
+    }
+
+    private static class Stats {
+        final LongAdder count = new LongAdder();
+        final DoubleAdder total = new DoubleAdder();
+        volatile double max;
+        volatile double last;
+
+        void add(double v) {
+            count.increment();
+            total.add(v);
+            last = v;
+            if (v > max) {
+                synchronized (this) {
+                    if (v > max) {
+                        max = v;
+                    }
+                }
+            }
+        }
+
+        MetricStats snapshot() {
+            return new MetricStats(count.sum(), total.sum(), max, last);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.disconf.client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX 视图: io.disconf.client:type=Metrics
+ *
+ * @author houkangxi
+ */
+public interface DisconfMetricsMXBean {
+
+    /**
+     * 所有耗时/数值类指标, key 为 name 或 name[tag]
+     */
+    Map<String, MetricStats> getStats();
+
+    /**
+     * 所有计数器
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * 所有当前值
+     */
+    Map<String, Long> getGauges();
+
+    long getReconnectCount();
+
+    long getSnapshotVersion();
+
+    void reset();
+}
@@ -0,0 +1,48 @@
+package io.disconf.client.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 某个指标的统计快照: 次数、总和、最大值、最近一次。耗时类指标单位为毫秒。
+ *
+ * @author houkangxi
+ */
+public class MetricStats {
+    private final long count;
+    private final double total;
+    private final double max;
+    private final double last;
+
+    @ConstructorProperties({"count", "total", "max", "last"})
+    public MetricStats(long count, double total, double max, double last) {
+        this.count = count;
+        this.total = total;
+        this.max = max;
+        this.last = last;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + count + ", total=" + total + ", max=" + max + ", last=" + last + '}';
+    }
+}
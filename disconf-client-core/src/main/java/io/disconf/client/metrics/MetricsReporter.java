@@ -0,0 +1,39 @@
+package io.disconf.client.metrics;
+
+/**
+ * 指标上报 SPI, 通过 {@link java.util.ServiceLoader} 加载
+ * (META-INF/services/io.disconf.client.metrics.MetricsReporter),
+ * 用来把指标对接到 prometheus、statsd 等监控系统。
+ *
+ * @author houkangxi
+ */
+public interface MetricsReporter {
+
+    /**
+     * 记录一次耗时
+     *
+     * @param name  - 指标名, 见 {@link DisconfMetrics} 中的常量
+     * @param tag   - 维度, 如节点路径、bean 类名, 可以为 null
+     * @param nanos - 耗时(纳秒)
+     */
+    default void recordTime(String name, String tag, long nanos) {
+    }
+
+    /**
+     * 记录一个数值样本, 如下载字节数、变更 key 数
+     */
+    default void recordValue(String name, String tag, long value) {
+    }
+
+    /**
+     * 计数器累加
+     */
+    default void increment(String name, String tag, long delta) {
+    }
+
+    /**
+     * 设置当前值
+     */
+    default void gauge(String name, long value) {
+    }
+}
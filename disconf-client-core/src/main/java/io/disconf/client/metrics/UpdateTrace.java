@@ -0,0 +1,141 @@
+package io.disconf.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次配置更新的链路记录: 从 ZK 事件开始, 经过下载、写文件、diff、注入、回调各阶段的耗时。
+ * 在处理线程上通过 {@link #current()} 传递, 完成后保留在 {@link UpdateTracer} 的环形缓冲里。
+ *
+ * @author houkangxi
+ */
+public class UpdateTrace {
+    private static final ThreadLocal<UpdateTrace> CURRENT = new ThreadLocal<>();
+
+    public static final String DOWNLOAD = "download";
+    public static final String WRITE = "write";
+    public static final String PARSE = "parse";
+    public static final String DIFF = "diff";
+    public static final String PREPARE = "prepare";
+    public static final String INJECT = "inject";
+    public static final String CALLBACK = "callback";
+    public static final String LISTENER = "listener";
+
+    private final String id;
+    private final String node;
+    private final long mzxid;
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<String> stages = Collections.synchronizedList(new ArrayList<>());
+    private volatile long totalNanos = -1;
+    private volatile String error;
+
+    UpdateTrace(String id, String node, long mzxid) {
+        this.id = id;
+        this.node = node;
+        this.mzxid = mzxid;
+    }
+
+    /**
+     * 当前线程正在处理的更新, 没有则返回 null
+     */
+    public static UpdateTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程的更新上记录一个阶段, 没有进行中的更新时什么都不做
+     */
+    public static void mark(String stage, String tag, long startNanos) {
+        UpdateTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.stage(stage, tag, startNanos);
+        }
+    }
+
+    /**
+     * 把更新绑定到当前线程
+     */
+    public UpdateTrace attach() {
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * 从当前线程解绑但不结束, 用于并行处理的工作线程
+     */
+    public void detach() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 结束更新并从当前线程解绑
+     */
+    public void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    public void stage(String stage, String tag, long startNanos) {
+        long offset = startNanos - this.startNanos;
+        long cost = System.nanoTime() - startNanos;
+        String name = tag == null ? stage : stage + '[' + tag + ']';
+        stages.add(String.format("%s +%.3fms %.3fms", name, offset / 1e6, cost / 1e6));
+    }
+
+    public void fail(String error) {
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public long getMzxid() {
+        return mzxid;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 总耗时, 未完成时为 -1
+     */
+    public double getTotalMillis() {
+        long total = totalNanos;
+        return total < 0 ? -1 : total / 1e6;
+    }
+
+    public boolean isFinished() {
+        return totalNanos >= 0;
+    }
+
+    /**
+     * 各阶段: 名称 +开始偏移 耗时
+     */
+    public List<String> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "UpdateTrace{id='" + id + "', total=" + getTotalMillis() + "ms, stages=" + getStages()
+                + (error == null ? "" : ", error=" + error) + '}';
+    }
+}
@@ -0,0 +1,104 @@
+package io.disconf.client.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * 最近配置更新的环形缓冲, 容量由 -Ddisconf.trace.capacity 指定, 默认 128。
+ *
+ * @author houkangxi
+ */
+public class UpdateTracer implements UpdateTracerMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(UpdateTracer.class);
+    private static final UpdateTracer INSTANCE = new UpdateTracer(Integer.getInteger("disconf.trace.capacity", 128));
+
+    static {
+        INSTANCE.registerMBean();
+    }
+
+    private final AtomicReferenceArray<UpdateTrace> ring;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public static UpdateTracer get() {
+        return INSTANCE;
+    }
+
+    UpdateTracer(int capacity) {
+        ring = new AtomicReferenceArray<>(Math.max(capacity, 1));
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                server.registerMBean(this, new ObjectName("io.disconf.client:type=UpdateTracer"));
+            } catch (InstanceAlreadyExistsException e) {
+                server.registerMBean(this, new ObjectName("io.disconf.client:type=UpdateTracer,id=" + System.identityHashCode(this)));
+            }
+        } catch (Exception e) {
+            logger.warn("Fail to register UpdateTracer MBean", e);
+        }
+    }
+
+    /**
+     * 开始一次更新并绑定到当前线程
+     *
+     * @param node  - 节点
+     * @param mzxid - 节点最后修改的 zxid, 未知时传 -1
+     */
+    public UpdateTrace begin(String node, long mzxid) {
+        long seq = sequence.incrementAndGet();
+        String item = node.substring(node.lastIndexOf('/') + 1);
+        String id = mzxid >= 0 ? item + "@" + Long.toHexString(mzxid) : item + "#" + seq;
+        UpdateTrace trace = new UpdateTrace(id, node, mzxid);
+        ring.set((int) (seq % ring.length()), trace);
+        return trace.attach();
+    }
+
+    @Override
+    public List<UpdateTrace> getRecentUpdates() {
+        int capacity = ring.length();
+        long seq = sequence.get();
+        List<UpdateTrace> list = new ArrayList<>(capacity);
+        for (long i = seq; i > seq - capacity && i > 0; i--) {
+            UpdateTrace trace = ring.get((int) (i % capacity));
+            if (trace != null) {
+                list.add(trace);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public UpdateTrace findUpdate(String id) {
+        for (UpdateTrace trace : getRecentUpdates()) {
+            if (trace.getId().equals(id)) {
+                return trace;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<UpdateTrace> slowest(int n) {
+        return getRecentUpdates().stream()
+                .sorted(Comparator.comparingDouble(UpdateTrace::getTotalMillis).reversed())
+                .limit(n).collect(Collectors.toList());
+    }
+
+    @Override
+    public int getCapacity() {
+        return ring.length();
+    }
+}
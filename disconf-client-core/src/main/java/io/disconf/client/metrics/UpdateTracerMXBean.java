@@ -0,0 +1,28 @@
+package io.disconf.client.metrics;
+
+import java.util.List;
+
+/**
+ * JMX 视图: io.disconf.client:type=UpdateTracer
+ *
+ * @author houkangxi
+ */
+public interface UpdateTracerMXBean {
+
+    /**
+     * 最近的更新, 新的在前
+     */
+    List<UpdateTrace> getRecentUpdates();
+
+    /**
+     * 按 id 查找, 找不到返回 null
+     */
+    UpdateTrace findUpdate(String id);
+
+    /**
+     * 最近更新中最慢的 n 个
+     */
+    List<UpdateTrace> slowest(int n);
+
+    int getCapacity();
+}
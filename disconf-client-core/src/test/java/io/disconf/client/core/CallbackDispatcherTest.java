@@ -0,0 +1,145 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class CallbackDispatcherTest {
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher(2, 200);
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    private static long counter(String name, String tag) {
+        Long value = DisconfMetrics.get().getCounters().get(name + '[' + tag + ']');
+        return value == null ? 0 : value;
+    }
+
+    @Test
+    public void test_isolation_and_timeout() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ConfigFileUpdateCallback slow = new ConfigFileUpdateCallback() {
+            @Override
+            public void onUpdate(File configFile) {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        ConfigFileUpdateCallback failing = configFile -> {
+            throw new IllegalStateException("boom");
+        };
+        ConfigFileUpdateCallback fast = configFile -> received.add(configFile.getName());
+        ConfigFileUpdateCallback onlyJson = new ConfigFileUpdateCallback() {
+            @Override
+            public void onUpdate(File configFile) {
+                received.add("json:" + configFile.getName());
+            }
+
+            @Override
+            public boolean accept(String item) {
+                return item.endsWith(".json");
+            }
+        };
+        long timeouts = counter(DisconfMetrics.CALLBACK_TIMEOUT, slow.getClass().getName());
+        long errors = counter(DisconfMetrics.CALLBACK_ERROR, failing.getClass().getName());
+        dispatcher.setCallbacks(Arrays.asList(slow, failing, fast, onlyJson));
+
+        long start = System.nanoTime();
+        dispatcher.dispatch(new File("app.properties"));
+        dispatcher.dispatch(new File("rules.json"));
+        // 分发不等待回调执行
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.awaitIdle(5, TimeUnit.SECONDS));
+        // 不同回调之间不保证顺序
+        assertEquals(Arrays.asList("app.properties", "json:rules.json", "rules.json"), sorted(received));
+        assertEquals(timeouts + 2, counter(DisconfMetrics.CALLBACK_TIMEOUT, slow.getClass().getName()));
+        assertEquals(errors + 2, counter(DisconfMetrics.CALLBACK_ERROR, failing.getClass().getName()));
+    }
+
+    @Test
+    public void test_stuck_callback_does_not_starve_others() throws Exception {
+        CallbackDispatcher single = new CallbackDispatcher(ExecutorStrategy.PLATFORM, 1, 100);
+        CountDownLatch received = new CountDownLatch(2);
+        List<Boolean> interrupted = new CopyOnWriteArrayList<>();
+        // 不响应中断
+        AtomicBoolean released = new AtomicBoolean();
+        ConfigFileUpdateCallback stuck = configFile -> {
+            while (!released.get()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        };
+        ConfigFileUpdateCallback fast = configFile -> {
+            interrupted.add(Thread.currentThread().isInterrupted());
+            received.countDown();
+        };
+        try {
+            single.setCallbacks(Arrays.asList(stuck, fast));
+            single.dispatch(new File("a.properties"));
+            single.dispatch(new File("b.properties"));
+            // 唯一的线程被卡住, 超时后补一个线程处理其他回调
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(false, false), interrupted);
+            assertEquals(1, single.getAbandonedThreads());
+            // 卡住的通道也换了线程继续处理后面的通知
+            assertTrue(single.awaitIdle(5, TimeUnit.SECONDS));
+            released.set(true);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (single.getAbandonedThreads() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, single.getAbandonedThreads());
+        } finally {
+            released.set(true);
+            single.close();
+        }
+    }
+
+    private static List<String> sorted(List<String> list) {
+        String[] array = list.toArray(new String[0]);
+        Arrays.sort(array);
+        return Arrays.asList(array);
+    }
+
+    @Test
+    public void test_pending_notifications_coalesce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        dispatcher.setCallbacks(Arrays.asList((ConfigFileUpdateCallback) configFile -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(configFile.getName());
+        }));
+        File a = new File("a.properties"), b = new File("b.properties");
+        dispatcher.dispatch(a);
+        Thread.sleep(50);
+        // 第一个还在执行, 之后的通知排队, 同一个文件只保留一个
+        dispatcher.dispatch(a);
+        dispatcher.dispatch(b);
+        dispatcher.dispatch(a);
+        release.countDown();
+        assertTrue(dispatcher.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a.properties", "b.properties", "a.properties"), received);
+    }
+}
@@ -0,0 +1,127 @@
+package io.disconf.client.core;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ClusterMembershipTest {
+    private final StubMembership membership = new StubMembership();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    // 按顺序返回预设的读取结果, 没有预设时读取失败
+    static class StubMembership extends ClusterMembership {
+        final Queue<Object[]> reads = new ConcurrentLinkedQueue<>();
+        volatile int readCount;
+
+        StubMembership() {
+            super(null, "/disconf/app");
+        }
+
+        StubMembership next(int cversion, String... members) {
+            reads.add(new Object[]{cversion, members});
+            return this;
+        }
+
+        @Override
+        List<String> readChildren(Stat stat) throws Exception {
+            readCount++;
+            Object[] read = reads.poll();
+            if (read == null) {
+                throw new KeeperException.ConnectionLossException();
+            }
+            stat.setCversion((Integer) read[0]);
+            return Arrays.asList((String[]) read[1]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        membership.close();
+    }
+
+    private void listen(String name) {
+        membership.addListener((snapshot, joined, left) ->
+                events.add(name + ":" + snapshot.getVersion() + joined + left));
+    }
+
+    @Test
+    public void test_listener_order() {
+        listen("first");
+        listen("second");
+        membership.next(1, "h1_1", "h2_2").next(2, "h2_2", "h3_3");
+        membership.refresh();
+        membership.refresh();
+        assertEquals(Arrays.asList(
+                "first:1[h1_1, h2_2][]", "second:1[h1_1, h2_2][]",
+                "first:2[h3_3][h1_1]", "second:2[h3_3][h1_1]"), events);
+        ClusterMembership.Snapshot snapshot = membership.getSnapshot();
+        assertEquals(new TreeSet<>(Arrays.asList("h2_2", "h3_3")), snapshot.getMembers());
+        assertArrayEquals(new String[]{"h2", "h3"}, snapshot.getHosts());
+
+        // 子节点版本变了但成员相同 (增删抵消), 不通知
+        membership.next(4, "h2_2", "h3_3").refresh();
+        assertEquals(4, events.size());
+        assertEquals(2, membership.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void test_stale_read_dropped() {
+        listen("l");
+        membership.next(5, "h1_1", "h2_2").refresh();
+        // 并发刷新时较早发起的读取后返回, cversion 更小
+        membership.next(3, "h1_1").refresh();
+        membership.next(5, "h1_1").refresh();
+        assertEquals(new TreeSet<>(Arrays.asList("h1_1", "h2_2")), membership.getSnapshot().getMembers());
+        assertEquals(1, membership.getSnapshot().getVersion());
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void test_read_directly_before_loaded() {
+        membership.next(1, "h1_1");
+        assertEquals(Collections.singleton("h1_1"), membership.getSnapshot().getMembers());
+        assertEquals(1, membership.readCount);
+        // 加载过之后只读内存快照
+        membership.getSnapshot();
+        assertEquals(1, membership.readCount);
+    }
+
+    @Test
+    public void test_retry_after_failure() throws Exception {
+        listen("l");
+        // 读取失败, 没有注册上 watch, 只能靠重试
+        membership.refresh();
+        membership.next(1, "h1_1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ClusterMembership.retryDelay(0) + 3);
+        while (events.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(Collections.singletonList("l:1[h1_1][]"), events);
+        assertEquals(2, membership.readCount);
+    }
+
+    @Test
+    public void test_retry_backoff() {
+        assertEquals(ResilientActiveKeyValueStore.RETRY_PERIOD_SECONDS, ClusterMembership.retryDelay(0));
+        assertEquals(ResilientActiveKeyValueStore.RETRY_PERIOD_SECONDS * 2, ClusterMembership.retryDelay(1));
+        assertEquals(60, ClusterMembership.retryDelay(5));
+        assertEquals(60, ClusterMembership.retryDelay(30));
+    }
+
+    @Test
+    public void test_no_retry_after_close() throws Exception {
+        membership.close();
+        membership.refresh();
+        membership.next(1, "h1_1");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(ClusterMembership.retryDelay(0)) + 500);
+        assertEquals(1, membership.readCount);
+    }
+}
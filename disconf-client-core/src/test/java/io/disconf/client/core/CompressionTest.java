@@ -0,0 +1,78 @@
+package io.disconf.client.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+
+    private static byte[] sample() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 500; i++) {
+            sb.append("\"app.key").append(i).append("\":\"value-").append(i).append("\",");
+        }
+        return sb.append("\"end\":\"中文\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_wrap_unwrap() throws Exception {
+        byte[] data = sample();
+        for (Compression c : Compression.values()) {
+            if (!c.isAvailable()) {
+                continue;
+            }
+            byte[] payload = c.wrap(data);
+            if (c != Compression.NONE) {
+                assertEquals(0, payload[0]);
+                assertTrue(c + ": " + payload.length, payload.length < data.length / 4);
+            }
+            assertArrayEquals(data, Compression.unwrap(payload));
+        }
+        // 没有格式标记的旧数据原样返回
+        byte[] json = "{\"a\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+        assertSame(json, Compression.unwrap(json));
+        assertEquals(Compression.GZIP, Compression.forName("gzip"));
+        assertEquals(Compression.NONE, Compression.forName(null));
+    }
+
+    @Test
+    public void test_download_negotiation() throws Exception {
+        byte[] data = sample();
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/config/file", exchange -> {
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            acceptEncoding.set(accept);
+            byte[] body = data;
+            if (accept != null && accept.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                body = Compression.GZIP.compress(data);
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            URL resource = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/config/file?key=a.json");
+            DeltaDownloader downloader = new DeltaDownloader();
+            downloader.setCompression(false);
+            assertArrayEquals(data, downloader.download("/a.json", resource).getData());
+            assertNull(acceptEncoding.get());
+
+            downloader.setCompression(true);
+            assertArrayEquals(data, downloader.download("/a.json", resource).getData());
+            assertEquals(Compression.acceptEncoding(), acceptEncoding.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
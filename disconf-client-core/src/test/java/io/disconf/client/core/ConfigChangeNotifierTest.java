@@ -0,0 +1,99 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConfigChangeNotifierTest {
+
+    private static ConfigChangeSet diff(String oldText, String newText) {
+        return PropertiesDiff.diff(PropertiesParser.parse(oldText.getBytes(StandardCharsets.UTF_8)),
+                PropertiesParser.parse(newText.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class Recorder implements ConfigChangeListener {
+        final List<String> prefixes;
+        final List<ConfigChangeEvent> events = new ArrayList<>();
+
+        Recorder(String... prefixes) {
+            this.prefixes = Arrays.asList(prefixes);
+        }
+
+        @Override
+        public void onChange(ConfigChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public Collection<String> getKeyPrefixes() {
+            return prefixes;
+        }
+    }
+
+    @Test
+    public void test_prefixes() {
+        ConfigChangeSet changes = diff("db.url=a\ndb.user=u\nmq.host=h\nredis.port=1\n",
+                "db.url=b\nmq.host=h2\nredis.port=1\nredis.timeout=5\n");
+        assertEquals(Arrays.asList("db.url", "db.user", "mq.host", "redis.timeout"), changes.keys());
+        assertEquals(Arrays.asList("db.url", "db.user", "redis.timeout"),
+                changes.withPrefixes(Arrays.asList("redis.", "db", "db.u")).keys());
+        assertSame(changes, changes.withPrefixes(Collections.emptyList()));
+        assertTrue(changes.withPrefixes(Collections.singleton("zk.")).isEmpty());
+    }
+
+    private static long counter(String name, String tag) {
+        Long value = DisconfMetrics.get().getCounters().get(name + '[' + tag + ']');
+        return value == null ? 0 : value;
+    }
+
+    @Test
+    public void test_fire() {
+        ConfigChangeNotifier notifier = new ConfigChangeNotifier();
+        Recorder all = new Recorder(), db1 = new Recorder("db."), db2 = new Recorder("db."), zk = new Recorder("zk.");
+        ConfigChangeListener failing = event -> {
+            throw new IllegalStateException("boom");
+        };
+        notifier.addListener(failing);
+        notifier.addListener(all);
+        notifier.addListener(db1);
+        notifier.addListener(db2);
+        notifier.addListener(db2);
+        notifier.addListener(zk);
+        long errors = counter(DisconfMetrics.LISTENER_ERROR, failing.getClass().getName());
+
+        notifier.fire("/disconf/app/file/app.properties", 7, diff("db.url=a\ndb.user=u\nmq.host=h\n", "db.url=b\nmq.host=h\nmq.port=1\n"));
+        assertEquals(1, all.events.size());
+        ConfigChangeEvent event = all.events.get(0);
+        assertEquals("/disconf/app/file/app.properties", event.getItem());
+        assertEquals(7, event.getVersion());
+        assertEquals(3, event.getChanges().size());
+        assertEquals("mq.port", event.getAdded().get(0).getKey());
+        assertEquals("db.user", event.getRemoved().get(0).getKey());
+        assertEquals("b", event.get("db.url").getNewValue());
+        assertEquals("a", event.get("db.url").getOldValue());
+
+        // 相同前缀的监听器共享同一个事件, 重复注册只通知一次
+        assertEquals(1, db1.events.size());
+        assertEquals(1, db2.events.size());
+        assertSame(db1.events.get(0), db2.events.get(0));
+        assertEquals(Arrays.asList("db.url", "db.user"), db1.events.get(0).getChanges().keys());
+        assertTrue(zk.events.isEmpty());
+        // 监听器的异常单独计数, 不和 ConfigFileUpdateCallback 混在一起
+        assertEquals(errors + 1, counter(DisconfMetrics.LISTENER_ERROR, failing.getClass().getName()));
+        assertEquals(0, counter(DisconfMetrics.CALLBACK_ERROR, failing.getClass().getName()));
+
+        notifier.removeListener(all);
+        notifier.fire("local", 8, diff("zk.hosts=a\n", "zk.hosts=b\n"));
+        assertEquals(1, all.events.size());
+        assertEquals(1, zk.events.size());
+        try {
+            event.getModified().clear();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.disconf.client.core;
+
+import com.sun.net.httpserver.HttpServer;
+import io.disconf.client.metrics.DisconfMetrics;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ConfigDeltaTest {
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_properties_patch() {
+        byte[] base = utf8("# 注释\na=1\nb=long\\\n   value\r\nc = 3\nd=4");
+        byte[] target = utf8("a=1\nb=new\nc=3\ne=中文=5\n# 注释\n");
+        byte[] patch = ConfigDelta.createPropertiesPatch(PropertiesParser.parse(base), PropertiesParser.parse(target));
+        assertEquals("+b=new\n-d\n+e=中文\\=5\n", new String(patch, StandardCharsets.UTF_8));
+
+        byte[] result = ConfigDelta.applyPropertiesPatch(base, patch);
+        // 未变更的行保持原样
+        assertEquals("# 注释\na=1\nb=new\nc = 3\ne=中文\\=5\n", new String(result, StandardCharsets.UTF_8));
+        assertEquals(PropertiesParser.parse(target).digest(), PropertiesParser.parse(result).digest());
+        assertEquals(ConfigDelta.version("x.properties", target), ConfigDelta.version("x.properties", result));
+    }
+
+    @Test
+    public void test_binary_patch() {
+        Random random = new Random(42);
+        byte[] base = new byte[100_000];
+        random.nextBytes(base);
+        byte[] target = Arrays.copyOf(base, base.length + 10);
+        target[10] ^= 1;
+        System.arraycopy(utf8("inserted"), 0, target, 50_000, 8);
+        target[base.length + 5] = 7;
+
+        byte[] patch = ConfigDelta.createBinaryPatch(base, target);
+        assertTrue("patch size " + patch.length, patch.length < 200);
+        assertArrayEquals(target, ConfigDelta.applyBinaryPatch(base, patch));
+
+        assertArrayEquals(base, ConfigDelta.applyBinaryPatch(target, ConfigDelta.createBinaryPatch(target, base)));
+        assertArrayEquals(target, ConfigDelta.applyBinaryPatch(new byte[0], ConfigDelta.createBinaryPatch(new byte[0], target)));
+    }
+
+    @Test
+    public void test_download_with_fallback() throws Exception {
+        Map<String, byte[]> versions = new HashMap<>();
+        StringBuilder big = new StringBuilder();
+        for (int k = 0; k < 1000; k++) {
+            big.append("k").append(k).append("=v\n");
+        }
+        byte[][] current = {utf8("a=1\nb=2\n" + big)};
+        String node = "/disconf/app_1_dev/file/app.properties";
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/config/file", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            int i = query.indexOf(ConfigDelta.BASE_VERSION_PARAM + "=");
+            byte[] base = i < 0 ? null : versions.get(query.substring(i + ConfigDelta.BASE_VERSION_PARAM.length() + 1));
+            byte[] body = base == null ? null : ConfigDelta.createPatch(node, base, current[0]);
+            if (body == null) {
+                body = current[0];
+            } else {
+                exchange.getResponseHeaders().set(ConfigDelta.PATCH_HEADER, ConfigDelta.patchType(node));
+                exchange.getResponseHeaders().set(ConfigDelta.VERSION_HEADER, ConfigDelta.version(node, current[0]));
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        File file = File.createTempFile("app", ".properties");
+        try {
+            URL resource = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/api/config/file?key=app.properties");
+            DeltaDownloader downloader = new DeltaDownloader();
+            downloader.setEnabled(true);
+
+            byte[] data = downloader.download(node, resource).getData();
+            assertArrayEquals(current[0], data);
+            Files.write(file.toPath(), data);
+            downloader.remember(node, file, PropertiesParser.parse(data));
+            versions.put(ConfigDelta.version(node, data), data);
+
+            // 服务端有基准版本: 增量
+            current[0] = utf8("a=1\nb=3\n" + big);
+            long hits = deltaCount("hit");
+            data = downloader.download(node, resource).getData();
+            assertArrayEquals(current[0], data);
+            assertEquals(hits + 1, deltaCount("hit"));
+
+            // 本地文件被改动: 补丁校验失败, 退回全量
+            Files.write(file.toPath(), utf8("a=1\nb=2\nx=local\n"));
+            long fallbacks = deltaCount("fallback");
+            assertArrayEquals(current[0], downloader.download(node, resource).getData());
+            assertEquals(fallbacks + 1, deltaCount("fallback"));
+
+            // 服务端不认识基准版本: 直接返回全量
+            versions.clear();
+            assertArrayEquals(current[0], downloader.download(node, resource).getData());
+        } finally {
+            server.stop(0);
+            file.delete();
+        }
+    }
+
+    private static long deltaCount(String tag) {
+        Long count = DisconfMetrics.get().getCounters().get(DeltaDownloader.DELTA + '[' + tag + ']');
+        return count == null ? 0 : count;
+    }
+}
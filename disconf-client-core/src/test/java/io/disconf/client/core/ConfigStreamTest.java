@@ -0,0 +1,168 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConfigStreamTest {
+
+    private static ConfigChangeEvent event(long version, String oldText, String newText) {
+        return new ConfigChangeEvent("app.properties", version, PropertiesDiff.diff(
+                PropertiesParser.parse(oldText.getBytes(StandardCharsets.UTF_8)),
+                PropertiesParser.parse(newText.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static class Collector implements ConfigFlow.Subscriber<ConfigChangeEvent> {
+        final List<ConfigChangeEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile ConfigFlow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(ConfigFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ConfigChangeEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static void await(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, list.size());
+    }
+
+    @Test
+    public void test_conflation_without_demand() throws Exception {
+        ConfigStream stream = new ConfigStream(Executors.newSingleThreadExecutor());
+        Collector collector = new Collector();
+        stream.subscribe(collector);
+        // 没有 request 时变更合并成一个
+        stream.onChange(event(1, "a=1\nb=1\nc=1\n", "a=2\nb=1\nc=1\n"));
+        stream.onChange(event(2, "a=2\nb=1\nc=1\n", "a=3\nb=2\nc=1\nd=1\n"));
+        stream.onChange(event(3, "a=3\nb=2\nc=1\nd=1\n", "a=3\nb=1\nc=1\n"));
+        Thread.sleep(50);
+        assertTrue(collector.events.isEmpty());
+
+        collector.subscription.request(1);
+        await(collector.events, 1);
+        ConfigChangeEvent merged = collector.events.get(0);
+        assertEquals(3, merged.getVersion());
+        // b 变回了原值, d 新增后又删除
+        assertEquals(Collections.singletonList("a"), merged.getChanges().keys());
+        assertEquals("1", merged.get("a").getOldValue());
+        assertEquals("3", merged.get("a").getNewValue());
+
+        // 已经没有 demand
+        stream.onChange(event(4, "c=1\n", "c=2\n"));
+        Thread.sleep(50);
+        assertEquals(1, collector.events.size());
+        collector.subscription.request(Long.MAX_VALUE);
+        await(collector.events, 2);
+        stream.onChange(event(5, "c=2\n", "c=3\n"));
+        await(collector.events, 3);
+
+        stream.close();
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, stream.getSubscriberCount());
+    }
+
+    @Test
+    public void test_close_default_executor() throws Exception {
+        ConfigChangeNotifier notifier = new ConfigChangeNotifier();
+        ConfigStream stream = notifier.getStream();
+        Collector collector = new Collector();
+        stream.subscribe(collector);
+        collector.subscription.request(Long.MAX_VALUE);
+        notifier.fire("app.properties", 1, event(1, "a=1\n", "a=2\n").getChanges());
+        await(collector.events, 1);
+
+        notifier.close();
+        assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(stream.isClosed());
+        assertEquals(0, stream.getSubscriberCount());
+        // 关闭后不再发布, 新的订阅直接结束
+        notifier.fire("app.properties", 2, event(2, "a=2\n", "a=3\n").getChanges());
+        Collector late = new Collector();
+        stream.subscribe(late);
+        assertTrue(late.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, collector.events.size());
+        assertTrue(late.events.isEmpty());
+    }
+
+    @Test
+    public void test_prefixes_and_slow_subscriber() throws Exception {
+        ConfigStream stream = new ConfigStream(Executors.newFixedThreadPool(2));
+        CountDownLatch release = new CountDownLatch(1);
+        Collector slow = new Collector() {
+            @Override
+            public void onNext(ConfigChangeEvent item) {
+                super.onNext(item);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Collector db = new Collector();
+        stream.subscribe(slow);
+        stream.withKeyPrefixes("db.").subscribe(db);
+        slow.subscription.request(Long.MAX_VALUE);
+        db.subscription.request(Long.MAX_VALUE);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            stream.onChange(event(i, "db.url=" + i + "\nmq=" + i + "\n", "db.url=" + (i + 1) + "\nmq=" + (i + 1) + "\n"));
+            Thread.sleep(1);
+        }
+        // 发布不会被慢的订阅者阻塞
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        await(slow.events, 1);
+        release.countDown();
+        await(slow.events, 2);
+        ConfigChangeEvent last = slow.events.get(1);
+        assertEquals(99, last.getVersion());
+        assertEquals("1", last.get("mq").getOldValue());
+        assertEquals("100", last.get("mq").getNewValue());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((db.events.isEmpty() || db.events.get(db.events.size() - 1).getVersion() != 99) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        for (ConfigChangeEvent e : db.events) {
+            assertEquals(Arrays.asList("db.url"), e.getChanges().keys());
+        }
+        assertEquals("100", db.events.get(db.events.size() - 1).get("db.url").getNewValue());
+
+        // request(0) 违反约定, 以 onError 结束
+        db.subscription.request(0);
+        assertTrue(db.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(db.error instanceof IllegalArgumentException);
+    }
+}
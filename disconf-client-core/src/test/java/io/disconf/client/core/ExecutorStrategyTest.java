@@ -0,0 +1,63 @@
+package io.disconf.client.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExecutorStrategyTest {
+
+    @Test
+    public void test_forName() {
+        assertEquals(ExecutorStrategy.PLATFORM, ExecutorStrategy.forName("platform"));
+        ExecutorStrategy preferred = ExecutorStrategy.VIRTUAL.isAvailable() ? ExecutorStrategy.VIRTUAL : ExecutorStrategy.PLATFORM;
+        assertEquals(preferred, ExecutorStrategy.forName(null));
+        assertEquals(preferred, ExecutorStrategy.forName(" auto "));
+        // 不可用时退回平台线程
+        assertEquals(preferred, ExecutorStrategy.forName("virtual"));
+    }
+
+    @Test
+    public void test_platform() throws Exception {
+        ExecutorService executor = ExecutorStrategy.PLATFORM.newExecutor("test-platform", 2);
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+            assertTrue(thread.getName(), thread.getName().startsWith("test-platform-"));
+            assertTrue(thread.isDaemon());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_virtual_blocking_fan_out() throws Exception {
+        Assume.assumeTrue(ExecutorStrategy.VIRTUAL.isAvailable());
+        ExecutorService executor = ExecutorStrategy.VIRTUAL.newExecutor("test-virtual", 1);
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+            assertEquals("test-virtual-1", thread.getName());
+            assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+            // 大量阻塞任务同时进行, 不受平台线程数限制
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(200);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class LayeredPropertiesTest {
+
+    private static ConfigSnapshot snapshot(String... kvs) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kvs.length; i += 2) {
+            properties.setProperty(kvs[i], kvs[i + 1]);
+        }
+        return ConfigSnapshot.of(properties);
+    }
+
+    @Test
+    public void test_precedence() {
+        LayeredProperties layered = new LayeredProperties();
+        layered.putLayer("a.properties", 0, snapshot("x", "a", "y", "a"));
+        layered.putLayer("b.properties", 1, snapshot("x", "b"));
+        layered.putLayer(LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE, snapshot("z", "local"));
+
+        assertEquals("b", layered.get("x"));
+        assertEquals("a", layered.get("y"));
+        assertEquals("local", layered.get("z"));
+        assertEquals(3, layered.getMergedProperties().size());
+    }
+
+    @Test
+    public void test_update_single_layer() {
+        LayeredProperties layered = new LayeredProperties();
+        layered.putLayer("a.properties", 0, snapshot("x", "a", "y", "a"));
+        layered.putLayer("b.properties", 1, snapshot("x", "b"));
+        long version = layered.getVersion();
+
+        // 被 b 覆盖的 key 在 a 里变化, 合并结果不变
+        ConfigChangeSet changes = layered.putLayer("a.properties", 0, snapshot("x", "a2", "y", "a"));
+        assertTrue(changes.getChanges().isEmpty());
+        assertEquals(version, layered.getVersion());
+
+        // 删除 b 中的 key, 回落到 a 的值
+        changes = layered.putLayer("b.properties", 1, snapshot("w", "b"));
+        assertEquals(Arrays.asList("w", "x"), changes.keys());
+        assertEquals(ConfigChange.Type.ADDED, changes.get("w").getType());
+        assertEquals("b", changes.get("x").getOldValue());
+        assertEquals("a2", changes.get("x").getNewValue());
+        assertEquals(version + 1, layered.getVersion());
+    }
+
+    @Test
+    public void test_remove_layer() {
+        LayeredProperties layered = new LayeredProperties();
+        layered.putLayer("a.properties", 0, snapshot("x", "a", "p", "${x}"));
+        assertTrue(layered.getPlaceholderKeys().contains("p"));
+
+        ConfigChangeSet changes = layered.removeLayer("a.properties");
+        assertEquals(2, changes.getRemoved().size());
+        assertNull(layered.getLayer("a.properties"));
+        assertTrue(layered.getMergedProperties().isEmpty());
+        assertTrue(layered.getPlaceholderKeys().isEmpty());
+    }
+
+    @Test
+    public void test_stage_and_commit() {
+        LayeredProperties layered = new LayeredProperties();
+        layered.putLayer("a.properties", 0, snapshot("x", "a", "y", "a"));
+        layered.putLayer(LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE, snapshot("y", "local"));
+        long version = layered.getVersion();
+
+        // 准备阶段不修改当前配置
+        LayeredProperties.Staged staged = layered.stage(Arrays.asList(
+                new LayeredProperties.Layer("a.properties", 0, snapshot("x", "a2", "y", "a2", "p", "${x}"))));
+        assertEquals(Arrays.asList("p", "x"), staged.getChanges().keys());
+        assertEquals("a2", staged.getProperties().getProperty("x"));
+        assertEquals("local", staged.getProperties().getProperty("y"));
+        assertEquals("a", layered.get("x"));
+        assertNull(layered.get("p"));
+        assertEquals(version, layered.getVersion());
+
+        assertTrue(staged.getPlaceholderKeys().contains("p"));
+        assertFalse(layered.getPlaceholderKeys().contains("p"));
+        Properties before = layered.getMergedProperties();
+
+        ConfigChangeSet changes = layered.commit(staged);
+        assertSame(staged.getChanges(), changes);
+        assertEquals("a2", layered.get("x"));
+        assertTrue(layered.getPlaceholderKeys().contains("p"));
+        assertEquals(version + 1, layered.getVersion());
+        // 合并结果整体替换, 之前拿到的不变
+        assertSame(staged.getProperties(), layered.getMergedProperties());
+        assertEquals("a", before.getProperty("x"));
+
+        // 准备之后其他层变了, 准备时的变更已经不准确, 拒绝提交
+        staged = layered.stage(Arrays.asList(new LayeredProperties.Layer("a.properties", 0, snapshot("x", "a3"))));
+        layered.putLayer("b.properties", 1, snapshot("x", "b"));
+        try {
+            layered.commit(staged);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals("b", layered.get("x"));
+        assertEquals("${x}", layered.getLayer("a.properties").get("p"));
+    }
+}
@@ -0,0 +1,124 @@
+package io.disconf.client.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LocalConfigWatcherTest {
+    private File dir;
+    private File file;
+    private LocalConfigWatcher watcher;
+    private final LayeredProperties layeredProperties = new LayeredProperties();
+    private final List<ConfigChangeSet> applied = new CopyOnWriteArrayList<>();
+    private final List<ConfigChangeSet> rejected = new CopyOnWriteArrayList<>();
+    private volatile boolean allowBad;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("disconf-local").toFile();
+        file = new File(dir, "app.properties");
+        write("a=1\nb=2\n");
+        layeredProperties.putLayer("remote", 0, PropertiesParser.parse("a=0\nc=3\n".getBytes(StandardCharsets.UTF_8)));
+        layeredProperties.putLayer(LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE,
+                PropertiesParser.parse(Files.readAllBytes(file.toPath())));
+        watcher = new LocalConfigWatcher(layeredProperties, new ConfigChangeHandler() {
+            @Override
+            public void prepare(LayeredProperties.Staged staged) {
+                if (!allowBad && "bad".equals(staged.getProperties().getProperty("a"))) {
+                    rejected.add(staged.getChanges());
+                    throw new IllegalArgumentException("a=bad");
+                }
+            }
+
+            @Override
+            public ConfigChangeSet applyChanges(ConfigChangeSet changes, LayeredProperties layeredProperties) {
+                applied.add(changes);
+                return changes;
+            }
+        }, 50);
+        watcher.watch(file, LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE);
+        watcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        watcher.close();
+        file.delete();
+        new File(dir, "other.properties").delete();
+        dir.delete();
+    }
+
+    private void write(String text) throws Exception {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void awaitApplied(int n) throws Exception {
+        // 部分平台的 WatchService 是轮询实现, 多等一会
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (applied.size() < n && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(n, applied.size());
+    }
+
+    @Test
+    public void test_reload_on_change() throws Exception {
+        // 连续多次写入合并成一次更新
+        write("a=1\nb=2\n");
+        write("a=1\nb=3\n");
+        write("a=1\nb=22\nd=4\n");
+        awaitApplied(1);
+        ConfigChangeSet changes = applied.get(0);
+        assertEquals(2, changes.size());
+        assertEquals("22", changes.get("b").getNewValue());
+        assertEquals(ConfigChange.Type.ADDED, changes.get("d").getType());
+        assertEquals("22", layeredProperties.get("b"));
+
+        // 不相关的文件和内容不变的写入都不处理
+        Files.write(new File(dir, "other.properties").toPath(), "b=5\n".getBytes(StandardCharsets.UTF_8));
+        write("a=1\nb=22\nd=4\n");
+        Thread.sleep(300);
+        assertEquals(1, applied.size());
+
+        // 删除本地文件, 回到远程配置
+        assertTrue(file.delete());
+        awaitApplied(2);
+        assertEquals("0", layeredProperties.get("a"));
+        assertNull(layeredProperties.get("b"));
+    }
+
+    @Test
+    public void test_rejected_in_prepare() throws Exception {
+        write("a=bad\nb=3\n");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (rejected.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(rejected.isEmpty());
+        // 校验失败, 配置层不变, 也不应用
+        assertEquals("1", layeredProperties.get("a"));
+        assertEquals("2", layeredProperties.get("b"));
+        assertTrue(applied.isEmpty());
+
+        // 被拒绝的内容没有记下来, 原样再保存一次会重新加载
+        allowBad = true;
+        write("a=bad\nb=3\n");
+        awaitApplied(1);
+        assertEquals("bad", layeredProperties.get("a"));
+
+        // 改正后生效
+        write("a=good\nb=3\n");
+        awaitApplied(2);
+        assertEquals("good", layeredProperties.get("a"));
+        assertEquals("3", layeredProperties.get("b"));
+    }
+}
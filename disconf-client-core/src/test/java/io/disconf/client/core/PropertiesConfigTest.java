@@ -0,0 +1,96 @@
+package io.disconf.client.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PropertiesConfigTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("disconf-test", ".properties");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void write(String text) throws Exception {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read() throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private Properties load() throws Exception {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static Properties props(String... kv) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kv.length; i += 2) {
+            properties.setProperty(kv[i], kv[i + 1]);
+        }
+        return properties;
+    }
+
+    @Test
+    public void test_modify_keeps_other_lines() throws Exception {
+        String text = "# 注释\r\na:1\r\nlong=x\\\r\n  y\r\n\r\nb = 中文\r\n";
+        write(text);
+        PropertiesConfig config = new PropertiesConfig(file);
+        assertEquals("xy", config.get("long"));
+        assertEquals("中文", config.get("b"));
+
+        Properties changes = props("a", "1", "long", "z");
+        config.saveToFile(changes, null);
+        assertEquals("# 注释\r\na:1\r\nlong=z\r\n\r\nb = 中文\r\n", read());
+        // 传入的 properties 不被修改
+        assertEquals(props("a", "1", "long", "z"), changes);
+
+        config.saveToFile(props("b", "新值"), null);
+        assertEquals("新值", load().getProperty("b"));
+        assertEquals("z", load().getProperty("long"));
+    }
+
+    @Test
+    public void test_append_only() throws Exception {
+        write("a=1");
+        PropertiesConfig config = new PropertiesConfig(file);
+        config.saveToFile(props("c", "3", "a", "1"), "new keys");
+        assertEquals("a=1\n#new keys\nc=3\n", read().replace(System.lineSeparator(), "\n"));
+        // 没有变化时不写文件, 带注释也一样
+        String saved = read();
+        long modified = file.lastModified();
+        config.saveToFile(props("c", "3"), "no changes");
+        assertEquals(modified, file.lastModified());
+        assertEquals(saved, read());
+        assertEquals(props("a", "1", "c", "3"), load());
+    }
+
+    @Test
+    public void test_reload_after_external_change() throws Exception {
+        write("a=1\nb=2\n");
+        PropertiesConfig config = new PropertiesConfig(file);
+        write("a=1\nb=2\nc=3 external\n");
+        config.saveToFile(props("b", "22"), null);
+        assertEquals("a=1\nb=22\nc=3 external\n", read());
+    }
+}
@@ -0,0 +1,82 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PropertiesDiffTest {
+
+    private static ConfigSnapshot snapshot(String... kvs) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kvs.length; i += 2) {
+            properties.setProperty(kvs[i], kvs[i + 1]);
+        }
+        return ConfigSnapshot.of(properties);
+    }
+
+    @Test
+    public void test_diff() {
+        ConfigSnapshot old = snapshot("a", "1", "b", "2", "c", "3");
+        ConfigSnapshot now = snapshot("a", "1", "b", "20", "d", "4", "e", "5");
+        ConfigChangeSet changes = PropertiesDiff.diff(old, now);
+
+        assertEquals(Arrays.asList("b", "c", "d", "e"), changes.keys());
+        assertEquals(ConfigChange.Type.MODIFIED, changes.get("b").getType());
+        assertEquals("2", changes.get("b").getOldValue());
+        assertEquals("20", changes.get("b").getNewValue());
+        assertEquals(ConfigChange.Type.REMOVED, changes.get("c").getType());
+        assertNull(changes.get("c").getNewValue());
+        assertEquals(2, changes.getAdded().size());
+        assertNull(changes.get("a"));
+    }
+
+    @Test
+    public void test_removed_when_new_is_larger() {
+        ConfigChangeSet changes = PropertiesDiff.diff(snapshot("a", "1"), snapshot("b", "1", "c", "1"));
+        assertEquals(1, changes.getRemoved().size());
+        assertEquals("a", changes.getRemoved().get(0).getKey());
+    }
+
+    @Test
+    public void test_no_change() {
+        assertTrue(PropertiesDiff.diff(snapshot("a", "1"), snapshot("a", "1")).isEmpty());
+        assertTrue(PropertiesDiff.diff(ConfigSnapshot.EMPTY, ConfigSnapshot.EMPTY).isEmpty());
+    }
+
+    @Test
+    public void test_placeholder_indexes() {
+        ConfigSnapshot s = snapshot("a", "${b}", "b", "1", "c", "x${a}");
+        assertArrayEquals(new int[]{0, 2}, s.placeholderIndexes());
+        assertEquals("1", s.get("b"));
+    }
+
+    @Test
+    public void test_map_diff_same_as_snapshot_diff() {
+        Random random = new Random(42);
+        Properties old = new Properties(), now = new Properties();
+        for (int i = 0; i < 2000; i++) {
+            int r = random.nextInt(4);
+            if (r != 0) {
+                old.setProperty("k" + i, "v" + i);
+            }
+            if (r != 1) {
+                now.setProperty("k" + i, r == 2 ? "changed" + i : "v" + i);
+            }
+        }
+        ConfigChangeSet expected = PropertiesDiff.diff(ConfigSnapshot.of(old), ConfigSnapshot.of(now));
+        ConfigChangeSet changes = PropertiesDiff.diff(old, now);
+        assertEquals(expected.keys(), changes.keys());
+        for (ConfigChange change : expected.getChanges()) {
+            ConfigChange actual = changes.get(change.getKey());
+            assertEquals(change.getType(), actual.getType());
+            assertEquals(change.getOldValue(), actual.getOldValue());
+            assertEquals(change.getNewValue(), actual.getNewValue());
+        }
+        assertEquals(now.size(), PropertiesDiff.diff(null, now).getAdded().size());
+        assertSame(ConfigChangeSet.EMPTY, PropertiesDiff.diff(now, now));
+    }
+}
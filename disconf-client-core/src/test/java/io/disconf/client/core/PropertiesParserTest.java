@@ -0,0 +1,61 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PropertiesParserTest {
+
+    private static void assertSameAsProperties(String text) throws Exception {
+        Properties expected = new Properties();
+        expected.load(new StringReader(text));
+        ConfigSnapshot snapshot = PropertiesParser.parse(text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, snapshot.toProperties());
+    }
+
+    @Test
+    public void test_same_as_properties_load() throws Exception {
+        assertSameAsProperties("a=1\nb = 2\r\nc:3\nd 4\n\te\t=\t5 \n");
+        assertSameAsProperties("# comment\n! comment\n\n   \nkey=value\\\n    continued\\\r\n  again\nx=\n");
+        assertSameAsProperties("k\\ ey=v\\=al\\:ue\nt=\\t\\n\\r\\f\\q\nu=\\u4e2d\\u6587\n");
+        assertSameAsProperties("中文.key=中文值\nemoji=😀\ndup=1\ndup=2\n");
+        assertSameAsProperties("noValue\nsep=:=\n  =emptyKey\nlast=\\");
+        assertSameAsProperties("key\\\n  part=v\n");
+    }
+
+    @Test
+    public void test_line_numbers() {
+        String text = "# header\na=1\n\nb=x\\\n  y\nc=3\r\nd=4\na=5\n";
+        ConfigSnapshot snapshot = PropertiesParser.parse(text.getBytes(StandardCharsets.UTF_8));
+        assertEquals("xy", snapshot.get("b"));
+        assertEquals(8, snapshot.lineOf("a"));
+        assertEquals(4, snapshot.lineOf("b"));
+        assertEquals(6, snapshot.lineOf("c"));
+        assertEquals(7, snapshot.lineOf("d"));
+        assertEquals(-1, snapshot.lineOf("e"));
+    }
+
+    @Test
+    public void test_byte_buffer() {
+        byte[] bytes = "xx﻿a=1\nb=2yy".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        buffer.position(2).limit(bytes.length - 2);
+        ConfigSnapshot snapshot = PropertiesParser.parse(buffer);
+        assertEquals(2, snapshot.size());
+        assertEquals("1", snapshot.get("a"));
+        assertEquals("2", snapshot.get("b"));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void test_malformed_utf8() {
+        byte[] bytes = {'a', '=', (byte) 0xC3, '(', (byte) 0xFF};
+        assertEquals("�(�", PropertiesParser.parse(bytes).get("a"));
+    }
+}
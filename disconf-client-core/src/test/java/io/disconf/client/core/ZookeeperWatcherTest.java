@@ -0,0 +1,25 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ZookeeperWatcherTest {
+
+    @Test
+    public void test_presence_json() {
+        Map<String, String> kvs = new LinkedHashMap<>();
+        kvs.put("app.title", "myApp");
+        kvs.put("app.quote", "say \"hi\"\\n");
+        kvs.put("app.lines", "a\nb\t中文\u0001");
+        assertEquals("{\"app.title\":\"myApp\",\"app.quote\":\"say \\\"hi\\\"\\\\n\","
+                        + "\"app.lines\":\"a\\nb\\t中文\\u0001\"}",
+                new String(ZookeeperWatcher.toJsonBytes(kvs), StandardCharsets.UTF_8));
+        assertEquals("{}", new String(ZookeeperWatcher.toJsonBytes(Collections.emptyMap()), StandardCharsets.UTF_8));
+    }
+}
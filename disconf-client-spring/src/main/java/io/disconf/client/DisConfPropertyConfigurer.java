@@ -0,0 +1,472 @@
+package io.disconf.client;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.disconf.client.core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.*;
+import org.springframework.beans.factory.support.AutowireCandidateResolver;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringValueResolver;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Disconf 配置入口类, 配置只需要关注构造方法。
+ *
+ * @author houkangxi
+ */
+public class DisConfPropertyConfigurer extends PropertyPlaceholderConfigurer implements
+        BeanFactoryPostProcessor, BeanPostProcessor, PriorityOrdered, BeanNameAware, BeanFactoryAware, AutowireCandidateResolver//
+        , ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(DisConfPropertyConfigurer.class);
+    private final BeanPropertyChangeHandler beanPropertyChangeHandler = new BeanPropertyChangeHandler();
+    private ZookeeperWatcher zookeeperWatcher;
+    //  支持本地配置文件, 用来做差异化控制, 如果有相同的Key,则本地配置会覆盖中心化配置
+    private final File localConf = new File("conf/app.properties");
+    private PropertiesConfig localConfig;
+    // 本地配置文件的热加载, -Ddisconf.local.watch=false 关闭
+    private LocalConfigWatcher localConfigWatcher;
+    // 远程和本地配置的变更都通知到这里注册的监听器
+    private final ConfigChangeNotifier changeNotifier = new ConfigChangeNotifier();
+    // 每个 properties 配置项、本地配置、系统属性各自一层, 按优先级合并
+    private final LayeredProperties layeredProperties = new LayeredProperties();
+    // 需要在 mergeProperties 时加载的配置层, 远程配置项一般已经由 zookeeperWatcher 加载过了
+    private final List<LayerSource> layerSources = new ArrayList<>();
+    private int systemPropertiesMode = SYSTEM_PROPERTIES_MODE_FALLBACK;
+    private boolean layersLoaded;
+    // processProperties 解析占位符用的配置
+    private Properties resolvedProperties;
+
+    public ZookeeperWatcher getZookeeperWatcher() {
+        return zookeeperWatcher;
+    }
+
+    public LayeredProperties getLayeredProperties() {
+        return layeredProperties;
+    }
+
+    public LocalConfigWatcher getLocalConfigWatcher() {
+        return localConfigWatcher;
+    }
+
+    /**
+     * 注册 key 级别的变更监听, Spring 容器里的 {@link ConfigChangeListener} bean 会自动注册
+     */
+    public void addConfigChangeListener(ConfigChangeListener listener) {
+        changeNotifier.addListener(listener);
+    }
+
+    public void removeConfigChangeListener(ConfigChangeListener listener) {
+        changeNotifier.removeListener(listener);
+    }
+
+    /**
+     * 注册配置校验, 校验失败的更新不生效; Spring 容器里的 {@link ConfigValidator} bean 会自动注册
+     */
+    public void addConfigValidator(ConfigValidator validator) {
+        beanPropertyChangeHandler.addValidator(validator);
+    }
+
+    /**
+     * 把前缀下的配置绑定到不可变的配置对象, 配置变更时整体替换, 见 {@link ConfigurationBean}
+     */
+    public <T> ConfigBinding<T> bind(String prefix, Class<T> type) {
+        return beanPropertyChangeHandler.bind(prefix, type);
+    }
+
+    /**
+     * 配置变更的响应式流, 包括远程和本地配置的变更
+     */
+    public ConfigStream getConfigStream() {
+        return changeNotifier.getStream();
+    }
+
+    /**
+     * 主动刷新配置接口 -- 即使不使用disconf 也可以刷新配置, 所有 @Value 关联的bean的属性或setter方法都会调用
+     *
+     * @param oldProperties - 旧配置, 传 null 时所有 key 都视为变更
+     * @param newProperties
+     */
+    public void changeBeanProperties(Properties oldProperties, Properties newProperties) {
+        beanPropertyChangeHandler.changeBeanProperties(oldProperties, newProperties);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param appName - 应用名
+     * @param items   - 配置项列表
+     */
+    public DisConfPropertyConfigurer(String appName, String... items) {
+        this(appName, new DefaultResourceLoader(), items);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param appName        - 应用名
+     * @param items          - 配置项列表
+     * @param resourceLoader - 资源加载器
+     */
+    public DisConfPropertyConfigurer(String appName, ResourceLoader resourceLoader, String... items) {
+        this(appName, resourceLoader, Collections.singletonList(new ConfigNamespace(appName, items)));
+    }
+
+    /**
+     * 同时订阅多个命名空间 (比如公共配置 + 应用配置), 共用一个 ZK 会话和下载流程
+     *
+     * @param appName    - 应用名, 决定 disconf.properties 的位置
+     * @param namespaces - 命名空间, 见 {@link ConfigNamespace}
+     */
+    public DisConfPropertyConfigurer(String appName, List<ConfigNamespace> namespaces) {
+        this(appName, new DefaultResourceLoader(), namespaces);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param appName        - 应用名, 决定 disconf.properties 的位置
+     * @param resourceLoader - 资源加载器
+     * @param namespaces     - 命名空间, precedence 大的覆盖小的
+     */
+    public DisConfPropertyConfigurer(String appName, ResourceLoader resourceLoader, List<ConfigNamespace> namespaces) {
+        Properties disConf = readDisConfProperties(getDisConfigFilePath(appName), resourceLoader);
+        // 按 precedence 稳定排序, 依次作为配置层, 后面的覆盖前面的
+        List<ConfigNamespace> ordered = new ArrayList<>(namespaces);
+        ordered.sort(Comparator.comparingInt(ConfigNamespace::getPrecedence));
+        if (!localConf.exists()) {
+            localConf.getParentFile().mkdir();
+            try {
+                localConf.createNewFile();
+            } catch (IOException e) {
+            }
+        }
+        Resource localResource = resourceLoader.getResource(localConf.toURI().toString());
+        if (disConf == null) {
+            logger.warn("Disconf 配置没找到, 使用本地模式.");
+            int precedence = 0;
+            for (ConfigNamespace namespace : ordered) {
+                for (String item : namespace.getItems()) {
+                    if (ZookeeperWatcher.isProperties(item)) {
+                        String layer = namespace.getAppName().equals(appName) ? item : namespace.getAppName() + '/' + item;
+                        layerSources.add(new LayerSource(layer, precedence, resourceLoader.getResource(item)));
+                    }
+                    precedence++;
+                }
+            }
+            layerSources.add(new LayerSource(LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE, localResource));// add Local
+            return;
+        }
+        StringBuilder urlBuilder = new StringBuilder(256);
+        String confServerHost = disConf.getProperty("conf_server_host");
+        if (confServerHost.startsWith("http")) {
+            urlBuilder.append(confServerHost);
+        } else {
+            urlBuilder.append("http://").append(confServerHost);
+        }
+        StringBuilder zkHost = new StringBuilder(urlBuilder.length() + 20);
+        zkHost.append(urlBuilder).append("/api/zoo/hosts");
+        String zookeeperHosts;
+        try {
+            URL url = new URL(zkHost.toString());
+            InputStream stream = url.openStream();
+            String json = StreamUtils.copyToString(stream, StandardCharsets.UTF_8);
+            stream.close();
+            JSONObject object = JSON.parseObject(json);
+            zookeeperHosts = object.getString("value");
+            System.setProperty("disconf.zookeper.hosts", zookeeperHosts);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        String version = disConf.getProperty("version"), env = disConf.getProperty("env");
+
+        urlBuilder.append("/api/config/file?type=0&app=");
+        final String configItemUrlBase = urlBuilder.toString();
+        //
+        // 按命名空间和配置项的声明顺序, 后面的覆盖前面的
+        Map<String, URL> nodesResource = new LinkedHashMap<>();
+        int precedence = 0;
+        for (ConfigNamespace namespace : ordered) {
+            String configItemUrlPrefix = configItemUrlBase + namespace.getAppName()//
+                    + "&version=" + (namespace.getVersion() != null ? namespace.getVersion() : version)//
+                    + "&env=" + (namespace.getEnv() != null ? namespace.getEnv() : env) + "&key=";
+            String configItemNodePrefix = namespace.getNodePrefix(version, env);
+            for (String item : namespace.getItems()) {
+                String node = configItemNodePrefix + item;
+                Resource resource = resourceLoader.getResource(configItemUrlPrefix + item);
+                try {
+                    nodesResource.put(node, resource.getURL());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (ZookeeperWatcher.isProperties(node)) {
+                    layerSources.add(new LayerSource(node, precedence, resource));
+                }
+                precedence++;
+            }
+        }
+        String fileDownloadDir = disConf.getProperty("user_define_download_dir");
+
+        // disconf.properties 里的开关, 启动参数 -D 优先
+        copyToSystemProperty(disConf, "enable_delta", "disconf.delta");
+        copyToSystemProperty(disConf, "enable_compression", "disconf.compression");
+        copyToSystemProperty(disConf, "zk_compression", "disconf.zk.compression");
+        copyToSystemProperty(disConf, "local_watch", "disconf.local.watch");
+
+        zookeeperWatcher = new ZookeeperWatcher(zookeeperHosts, nodesResource, beanPropertyChangeHandler, fileDownloadDir, layeredProperties);
+        zookeeperWatcher.setChangeNotifier(changeNotifier);
+
+        layerSources.add(new LayerSource(LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE, localResource));
+        logger.info("fileDownloadDir = {}, cur = {}", fileDownloadDir, System.getProperty("user.dir"));
+    }
+
+    private static void copyToSystemProperty(Properties disConf, String key, String systemKey) {
+        String value = disConf.getProperty(key);
+        if (value != null && System.getProperty(systemKey) == null) {
+            System.setProperty(systemKey, value.trim());
+        }
+    }
+
+    /**
+     * 保存到本地配置文件
+     *
+     * @param config
+     * @param comment
+     * @throws IOException
+     */
+    public synchronized void saveToLocal(Properties config, String comment) throws IOException {
+        if (localConf.exists()) {
+            // 复用已解析的行, 文件被外部修改时 PropertiesConfig 会重新加载
+            if (localConfig == null) {
+                localConfig = new PropertiesConfig(localConf);
+            }
+            localConfig.saveToFile(config, comment);
+        }
+    }
+
+    @Override
+    public void setSystemPropertiesMode(int systemPropertiesMode) {
+        super.setSystemPropertiesMode(systemPropertiesMode);
+        this.systemPropertiesMode = systemPropertiesMode;
+    }
+
+    /**
+     * 返回分层合并后的配置; 配置变更时整体替换, 解析 ${...} 见 {@link #resolvePlaceholder(String, Properties)}
+     */
+    @Override
+    protected synchronized Properties mergeProperties() throws IOException {
+        if (!layersLoaded) {
+            List<LayeredProperties.Layer> layers = new ArrayList<>();
+            for (LayerSource source : layerSources) {
+                if (layeredProperties.getLayer(source.name) == null) {
+                    layers.add(new LayeredProperties.Layer(source.name, source.precedence, loadSnapshot(source.resource)));
+                }
+            }
+            // 通过 setLocations/setProperties 额外指定的属性, 优先级最低
+            Properties defaults = super.mergeProperties();
+            if (!defaults.isEmpty()) {
+                layers.add(new LayeredProperties.Layer(LayeredProperties.DEFAULT_LAYER, LayeredProperties.DEFAULT_PRECEDENCE,
+                        ConfigSnapshot.of(defaults)));
+            }
+            if (systemPropertiesMode != SYSTEM_PROPERTIES_MODE_NEVER) {
+                int precedence = systemPropertiesMode == SYSTEM_PROPERTIES_MODE_OVERRIDE ?
+                        LayeredProperties.SYSTEM_OVERRIDE_PRECEDENCE : LayeredProperties.SYSTEM_FALLBACK_PRECEDENCE;
+                layers.add(new LayeredProperties.Layer(LayeredProperties.SYSTEM_LAYER, precedence, ConfigSnapshot.of(System.getProperties())));
+            }
+            layeredProperties.putLayers(layers);
+            layersLoaded = true;
+            logger.info("配置层: {}", layeredProperties.getLayers());
+            watchLocalConf();
+        }
+        return layeredProperties.getMergedProperties();
+    }
+
+    // 配置层加载后再开始监听, 以加载到的内容为基准
+    private void watchLocalConf() {
+        if (!Boolean.parseBoolean(System.getProperty("disconf.local.watch", "true")) || !localConf.exists()) {
+            return;
+        }
+        try {
+            localConfigWatcher = new LocalConfigWatcher(layeredProperties, beanPropertyChangeHandler,
+                    Long.getLong("disconf.local.watch.debounce", 100));
+            localConfigWatcher.watch(localConf, LayeredProperties.LOCAL_LAYER, LayeredProperties.LOCAL_PRECEDENCE);
+            localConfigWatcher.setChangeNotifier(changeNotifier);
+            localConfigWatcher.start();
+        } catch (IOException e) {
+            logger.warn("本地配置热加载不可用: " + localConf, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (localConfigWatcher != null) {
+            localConfigWatcher.close();
+        }
+        // 变更流的订阅者收到 onComplete, 合并状态和线程随之释放
+        changeNotifier.close();
+        // 变更流结束后再关闭 zk 会话 (在线节点、下载线程、回调线程、集群成员), 之后不会再有变更
+        if (zookeeperWatcher != null) {
+            zookeeperWatcher.close();
+        }
+        beanPropertyChangeHandler.destroy();
+    }
+
+    private static ConfigSnapshot loadSnapshot(Resource resource) throws IOException {
+        try (InputStream stream = resource.getInputStream()) {
+            return PropertiesParser.parse(StreamUtils.copyToByteArray(stream));
+        }
+    }
+
+    protected Properties readDisConfProperties(String path, ResourceLoader resourceLoader) {
+        Resource resource = resourceLoader.getResource(path);
+        try (InputStream stream = resource.getInputStream()) {
+            if (stream == null) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(stream);
+            return properties;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    protected String getDisConfigFilePath(String appName) {
+        String tomcatHome = System.getenv("CATALINA_HOME");
+        if (tomcatHome == null) {
+            tomcatHome = System.getProperty("catalina.home");
+        }
+        logger.info("tomcatHome = {}", tomcatHome);
+        if (tomcatHome != null) {
+            return new File(tomcatHome, "appconfig" + File.separator + appName + File.separator + "disconf.properties").toURI().toString();
+        }
+        return "classpath:disconf.properties";
+    }
+
+    /**
+     * 按最新的合并结果解析, 后续创建的 bean 解析 ${...} 也能拿到新值; 参数 props 是启动时的合并结果
+     */
+    @Override
+    protected String resolvePlaceholder(String placeholder, Properties props) {
+        return layeredProperties.getMergedProperties().getProperty(placeholder);
+    }
+
+    @Override
+    public int getOrder() {
+        return beanPropertyChangeHandler.getOrder();
+    }
+
+    @Override
+    protected void processProperties(ConfigurableListableBeanFactory beanFactoryToProcess, Properties props) throws BeansException {
+        resolvedProperties = props;
+        super.processProperties(beanFactoryToProcess, props);
+    }
+
+    @Override
+    protected void doProcessProperties(ConfigurableListableBeanFactory beanFactoryToProcess, StringValueResolver valueResolver) {
+        // 包装后由父类注册到 beanFactory (addEmbeddedValueResolver)
+        final Properties props = resolvedProperties;
+        super.doProcessProperties(beanFactoryToProcess, beanPropertyChangeHandler.wrapValueResolver(beanFactoryToProcess, valueResolver,
+                key -> resolvePlaceholder(key, props, systemPropertiesMode), props));
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        // 占位符解析会原地替换 XML 里的值, 先收集
+        beanPropertyChangeHandler.registerXmlBeanProperties(beanFactory);
+        super.postProcessBeanFactory(beanFactory);
+        beanPropertyChangeHandler.postProcessBeanFactory(beanFactory);
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return beanPropertyChangeHandler.postProcessBeforeInitialization(bean, beanName);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return beanPropertyChangeHandler.postProcessAfterInitialization(bean, beanName);
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        beanPropertyChangeHandler.setBeanFactory(beanFactory);
+    }
+
+    @Override
+    public boolean isAutowireCandidate(BeanDefinitionHolder bdHolder, DependencyDescriptor descriptor) {
+        return beanPropertyChangeHandler.isAutowireCandidate(bdHolder, descriptor);
+    }
+
+    public boolean isRequired(DependencyDescriptor descriptor) {
+        return beanPropertyChangeHandler.isRequired(descriptor);
+    }
+
+    @Override
+    public Object getSuggestedValue(DependencyDescriptor descriptor) {
+        return beanPropertyChangeHandler.getSuggestedValue(descriptor);
+    }
+
+    public Object getLazyResolutionProxyIfNecessary(DependencyDescriptor descriptor, String beanName) {
+        return beanPropertyChangeHandler.getLazyResolutionProxyIfNecessary(descriptor, beanName);
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        beanPropertyChangeHandler.reportStartup();
+        try {
+            for (ConfigChangeListener listener : event.getApplicationContext().getBeansOfType(ConfigChangeListener.class).values()) {
+                changeNotifier.addListener(listener);
+            }
+        } catch (Exception e) {
+            logger.warn("注册 ConfigChangeListener 失败", e);
+        }
+        try {
+            for (ConfigValidator validator : event.getApplicationContext().getBeansOfType(ConfigValidator.class).values()) {
+                beanPropertyChangeHandler.addValidator(validator);
+            }
+        } catch (Exception e) {
+            logger.warn("注册 ConfigValidator 失败", e);
+        }
+        if (zookeeperWatcher != null) {
+            try {
+                Map<String, ConfigFileUpdateCallback> maps = event.getApplicationContext().getBeansOfType(ConfigFileUpdateCallback.class);
+                if (maps != null && maps.size() > 0) {
+                    zookeeperWatcher.setConfigFileUpdateCallbacks(maps.values());
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    private static class LayerSource {
+        final String name;
+        final int precedence;
+        final Resource resource;
+
+        LayerSource(String name, int precedence, Resource resource) {
+            this.name = name;
+            this.precedence = precedence;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,842 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import io.disconf.client.metrics.UpdateTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.*;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.config.*;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.support.PropertiesLoaderSupport;
+import org.springframework.util.*;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * process BeanPropertyChange
+ *
+ * @author houkangxi 2018/9/27 11:46
+ */
+public class BeanPropertyChangeHandler extends ContextAnnotationAutowireCandidateResolver
+        implements BeanFactoryPostProcessor
+        , PriorityOrdered, BeanPostProcessor, EnvironmentAware, ConfigChangeHandler {
+    private static final Logger logger = LoggerFactory.getLogger(BeanPropertyChangeHandler.class);
+    private static final String PLACEHOLDER_PREFIX = PlaceholderConfigurerSupport.DEFAULT_PLACEHOLDER_PREFIX;
+    private static final PropertyPlaceholderHelper propertyPlaceholderHelper = new PropertyPlaceholderHelper(PLACEHOLDER_PREFIX, PlaceholderConfigurerSupport.DEFAULT_PLACEHOLDER_SUFFIX, PlaceholderConfigurerSupport.DEFAULT_VALUE_SEPARATOR
+            , true);
+    // bean 类 -> 属性名 -> setter 注入点, 所有 context 共用
+    private static final Map<Class<?>, Map<String, DependencyDescriptor>> setterDescriptors = new ConcurrentReferenceHashMap<>(64);
+    private final DependencyRegistry dependencies = new DependencyRegistry();
+    private ValueIndex valueIndex = ValueIndex.EMPTY;
+    private DefaultListableBeanFactory beanFactory;
+    // xmlBeanProperties: <beanName,<propertyName, placeHolderExpression>>
+    private HashMap<String, Map<String, String>> xmlBeanProperties = new HashMap(16);
+    private final Set<String> patternLikeKeys = ConcurrentHashMap.newKeySet();
+    private RegexStringValueResolver regexValueResolver;
+    // 注册时前面已经有别的 embedded resolver, @Value 的值在 getSuggestedValue 里先解析, 保证按本处理器的配置解析
+    private volatile boolean resolveSuggestedValue;
+    // @ConfigurationBean 绑定: 前缀|类型 -> 绑定
+    private final Map<String, ConfigBinding<?>> bindings = new ConcurrentHashMap<>();
+    // 类 -> 标注了 @ConfigurationBean 的字段, 没有的为空列表
+    private final Map<Class<?>, List<Field>> bindingFields = new ConcurrentHashMap<>();
+    private final RefreshScope refreshScope = new RefreshScope();
+    // postProcessBeforeInitialization 累计耗时
+    private final AtomicLong initializationNanos = new AtomicLong();
+    private final CopyOnWriteArrayList<ConfigValidator> validators = new CopyOnWriteArrayList<>();
+    // 准备阶段转换好的值, 注入时值没变就直接使用
+    private final Map<DependencyDescriptor, PreparedValue> preparedValues = new ConcurrentHashMap<>();
+
+    public Object getSuggestedValue(final DependencyDescriptor descriptor) {
+        Object value = super.getSuggestedValue(descriptor);
+        if (value instanceof String) {
+            String refreshBean = refreshScope.currentlyCreating();
+            if (refreshBean != null && isDependencyOf(descriptor, refreshBean)) {
+                // refresh bean 整体重建, 不逐个字段注入
+                saveRefreshDependency((String) value, refreshBean);
+            } else if (!valueIndex.isIndexed(descriptor.getMember().getDeclaringClass())) {
+                saveDependency((String) value, descriptor);
+            }
+            if (resolveSuggestedValue) {
+                String resolved = regexValueResolver.resolveStringValue((String) value);
+                if (resolved != null) {
+                    return resolved;
+                }
+            }
+        }
+        return value;
+    }
+
+    private boolean isDependencyOf(DependencyDescriptor descriptor, String beanName) {
+        Member member = descriptor.getMember();
+        Class<?> beanType = beanFactory.getType(beanName);
+        if (beanType != null && member.getDeclaringClass().isAssignableFrom(beanType)) {
+            return true;
+        }
+        // @Bean 方法的参数
+        return member instanceof Method && member.getName().equals(beanFactory.getMergedBeanDefinition(beanName).getFactoryMethodName());
+    }
+
+    private void saveRefreshDependency(String placeHolderValue, final String beanName) {
+        propertyPlaceholderHelper.replacePlaceholders(placeHolderValue, placeholderName -> {
+            int valueFlagStart = placeholderName.indexOf(':');
+            refreshScope.registerDependency(valueFlagStart < 0 ? placeholderName : placeholderName.substring(0, valueFlagStart), beanName);
+            return "";
+        });
+    }
+
+    private void saveDependency(String placeHolderValue, final DependencyDescriptor descriptor) {
+        propertyPlaceholderHelper.replacePlaceholders(placeHolderValue, placeholderName -> {
+            int valueFlagStart = placeholderName.indexOf(':');
+            String name = valueFlagStart < 0 ? placeholderName : placeholderName.substring(0, valueFlagStart);
+            dependencies.add(name, descriptor);
+            return "";
+        });
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        long start = System.nanoTime();
+        injectBindings(bean, beanName);
+        Map<String, String> vs = xmlBeanProperties.remove(beanName);//invoke only once each bean
+        if (vs != null && vs.size() > 0) {
+            Class beanClass = bean.getClass();
+            for (Map.Entry<String, String> propertyValue : vs.entrySet()) {
+                String property = propertyValue.getKey();
+                String placeHolderValue = propertyValue.getValue();
+                DependencyDescriptor descriptor = parseDependencyDescriptor(beanClass, property);
+                if (descriptor != null) {
+                    saveDependency(placeHolderValue, descriptor);
+                    logger.debug("saveDependency: property={},value={}", property, placeHolderValue);
+                }
+            }
+        }
+        // 配置变更时注入到这个实例, 弱引用
+        dependencies.track(bean);
+        initializationNanos.addAndGet(System.nanoTime() - start);
+        return bean;
+    }
+
+
+    private void injectBindings(Object bean, String beanName) {
+        List<Field> fields = bindingFields.computeIfAbsent(bean.getClass(), beanClass -> {
+            List<Field> list = new ArrayList<>();
+            ReflectionUtils.doWithFields(beanClass, list::add,
+                    field -> field.isAnnotationPresent(ConfigurationBean.class) && field.getType() == ConfigBinding.class);
+            return list.isEmpty() ? Collections.emptyList() : list;
+        });
+        for (Field field : fields) {
+            Type type = ResolvableType.forField(field).getGeneric(0).getType();
+            String prefix = field.getAnnotation(ConfigurationBean.class).prefix();
+            if (prefix.isEmpty() && type instanceof Class) {
+                ConfigurationBean typeAnnotation = ((Class<?>) type).getAnnotation(ConfigurationBean.class);
+                prefix = typeAnnotation != null ? typeAnnotation.prefix() : "";
+            }
+            if (prefix.isEmpty()) {
+                throw new BeanInitializationException("@ConfigurationBean without prefix: " + field);
+            }
+            ReflectionUtils.makeAccessible(field);
+            ReflectionUtils.setField(field, bean, bind(prefix, type));
+            logger.debug("bind {}.{} -> {}", new Object[]{beanName, field.getName(), prefix});
+        }
+    }
+
+    /**
+     * 把前缀下的配置绑定到不可变的配置对象, 相同的前缀和类型共用一个绑定; 配置变更时整体替换
+     */
+    public <T> ConfigBinding<T> bind(String prefix, Class<T> type) {
+        return bind(prefix, (Type) type);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> ConfigBinding<T> bind(String prefix, Type type) {
+        return (ConfigBinding<T>) bindings.computeIfAbsent(prefix + '|' + type.getTypeName(), k -> {
+            ConfigBinding<T> binding = new ConfigBinding<>(prefix, type);
+            Properties properties = regexValueResolver != null ? regexValueResolver.allProperties() : loadAllProperties();
+            // 启动时绑定失败直接报错
+            if (!binding.refresh(properties, new InheritedValueResolver(properties), Collections.emptyList())) {
+                throw new IllegalStateException("Fail to bind " + prefix + "* to " + type.getTypeName());
+            }
+            return binding;
+        });
+    }
+
+    // 前缀下有 key 变更的绑定整体重建
+    private void refreshBindings(ConfigChangeSet changes, Properties properties) {
+        if (bindings.isEmpty()) {
+            return;
+        }
+        InheritedValueResolver valueResolver = new InheritedValueResolver(properties);
+        for (ConfigBinding<?> binding : bindings.values()) {
+            List<String> changedKeys = changes.withPrefixes(Collections.singleton(binding.getPrefix())).keys();
+            if (!changedKeys.isEmpty()) {
+                long start = System.nanoTime();
+                binding.refresh(properties, valueResolver, changedKeys);
+                UpdateTrace.mark(UpdateTrace.INJECT, binding.getPrefix() + "*->" + binding.getType().getTypeName(), start);
+            }
+        }
+    }
+
+    private static DependencyDescriptor parseDependencyDescriptor
+            (Class<?> beanClass, String propertyName) {
+        Map<String, DependencyDescriptor> descriptors = setterDescriptors.computeIfAbsent(beanClass, k -> new ConcurrentHashMap<>(8));
+        return descriptors.computeIfAbsent(propertyName, name -> {
+            PropertyDescriptor propertyDescriptor = BeanUtils.getPropertyDescriptor(beanClass, name);
+            if (propertyDescriptor != null && propertyDescriptor.getWriteMethod() != null) {
+                MethodParameter methodParameter = new MethodParameter(propertyDescriptor.getWriteMethod(), 0);
+                return new DependencyDescriptor(methodParameter, true);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        long start = System.nanoTime();
+        DefaultListableBeanFactory bf = (DefaultListableBeanFactory) beanFactory;
+        this.beanFactory = bf;
+        // 一直作为 resolver, 配置变更后新建的 bean (refresh bean、prototype、lazy) 的注入点也要记录
+        bf.setAutowireCandidateResolver(this);
+        bf.setTypeConverter(new JsonTypeConverter());
+        bf.registerScope(RefreshScope.SCOPE_NAME, refreshScope);
+        RefreshScope.registerProxies(bf);
+        loadValueIndex(bf.getBeanClassLoader());
+
+        if (regexValueResolver == null) {
+            // 没有经过 wrapValueResolver (不是由 DisConfPropertyConfigurer 解析占位符), 自己注册一个
+            logger.warn("placeholder resolver is not wrapped, resolve with all properties.");
+            final RegexStringValueResolver valueResolver = new RegexStringValueResolver(null, null, null);
+            valueResolver.origValueResolver = strVal -> propertyPlaceholderHelper.replacePlaceholders(strVal, valueResolver.allProperties());
+            valueResolver.keyResolver = key -> valueResolver.allProperties().getProperty(key);
+            regexValueResolver = valueResolver;
+            resolveSuggestedValue = bf.hasEmbeddedValueResolver();
+            bf.addEmbeddedValueResolver(valueResolver);
+        }
+        DisconfMetrics.get().recordSince(DisconfMetrics.STARTUP, "postProcessBeanFactory", start);
+    }
+
+    /**
+     * 包装 PlaceholderConfigurer 的占位符解析器, 支持 ${a.*} 通配和配置变更后按最新配置解析;
+     * 由 PlaceholderConfigurerSupport.doProcessProperties 注册到 beanFactory, 不需要反射
+     *
+     * @param beanFactory         - 注册到的 beanFactory
+     * @param placeholderResolver - 原来的解析器, 负责嵌套占位符、ignoreUnresolvablePlaceholders、trimValues、nullValue
+     * @param keyResolver         - 按 key 取当前配置的值, ${key} 直接查找, 不再完整解析
+     * @param properties          - 解析器使用的配置, 为 null 时用到再加载
+     */
+    public StringValueResolver wrapValueResolver(ConfigurableListableBeanFactory beanFactory, StringValueResolver placeholderResolver,
+                                                 PropertyPlaceholderHelper.PlaceholderResolver keyResolver, Properties properties) {
+        RegexStringValueResolver valueResolver = new RegexStringValueResolver(placeholderResolver, keyResolver, properties);
+        regexValueResolver = valueResolver;
+        resolveSuggestedValue = beanFactory.hasEmbeddedValueResolver();
+        return valueResolver;
+    }
+
+    // 编译时生成的 @Value 索引, -Ddisconf.value.index=false 关闭
+    private void loadValueIndex(ClassLoader classLoader) {
+        if (!Boolean.parseBoolean(System.getProperty("disconf.value.index", "true"))) {
+            return;
+        }
+        long start = System.nanoTime();
+        ValueIndex index = ValueIndex.load(classLoader);
+        if (!index.isEmpty()) {
+            int count = index.register(dependencies, classLoader);
+            valueIndex = index;
+            DisconfMetrics.get().recordSince(DisconfMetrics.STARTUP, "valueIndex", start);
+            logger.info("@Value index loaded: {} injection points", count);
+        }
+    }
+
+    /**
+     * context 启动完成后上报创建 bean 时在本处理器里花的时间
+     */
+    public void reportStartup() {
+        long nanos = initializationNanos.getAndSet(0);
+        if (nanos > 0) {
+            DisconfMetrics.get().recordTime(DisconfMetrics.STARTUP, "postProcessBeforeInitialization", nanos);
+        }
+    }
+
+    /**
+     * 收集 XML 里 property 的占位符, 要在 PlaceholderConfigurer 解析(原地替换)之前调用。
+     * 没有 property 的定义直接跳过, 注入点在 bean 创建时按类查找并缓存
+     */
+    public void registerXmlBeanProperties(ConfigurableListableBeanFactory beanFactory) {
+        long start = System.nanoTime();
+        String[] beanNames = beanFactory.getBeanDefinitionNames();
+        for (String beanName : beanNames) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+            if (!definition.hasPropertyValues()) {
+                continue;
+            }
+            Map<String, String> values = null;
+            for (PropertyValue pv : definition.getPropertyValues().getPropertyValues()) {
+                Object v = pv.getValue();
+                if (v instanceof TypedStringValue) {
+                    TypedStringValue typedStringValue = (TypedStringValue) v;
+                    String strVal = typedStringValue.getValue();
+                    if (strVal != null && strVal.startsWith(PLACEHOLDER_PREFIX)) {
+                        (values != null ? values : (values = new HashMap<>(4))).put(pv.getName(), strVal);
+                    }
+                } else if (v instanceof String) {
+                    String strVal = (String) v;
+                    if (strVal.startsWith(PLACEHOLDER_PREFIX)) {
+                        (values != null ? values : (values = new HashMap<>(4))).put(pv.getName(), strVal);
+                    }
+                }
+            }
+            if (values != null) {
+                logger.debug("  saveBeanProperty for {}=> {}", beanName, values);
+                xmlBeanProperties.put(beanName, values);
+            }
+        }
+        DisconfMetrics.get().recordSince(DisconfMetrics.STARTUP, "registerXmlBeanProperties", start);
+    }
+
+    private Properties loadAllProperties() {
+        Map<String, Properties> systemPropertiesMap = beanFactory.getBeansOfType(Properties.class);
+        Properties sysProperties = systemPropertiesMap.values().iterator().next();
+        Properties allProperties;
+        try {
+            allProperties = new Properties();
+            Class<PropertiesLoaderSupport> supportClass = PropertiesLoaderSupport.class;
+            Map<String, PropertiesLoaderSupport> propertiesMap = beanFactory.getBeansOfType(supportClass);
+            for (PropertiesLoaderSupport support : propertiesMap.values()) {
+                Method methodMerge = supportClass.getDeclaredMethod("mergeProperties");
+                methodMerge.setAccessible(true);
+                Properties properties = (Properties) methodMerge.invoke(support);
+                allProperties.putAll(properties);
+            }
+            // systemProperties 优先，所以在最后put.
+            allProperties.putAll(sysProperties);
+        } catch (Exception e) {
+            allProperties = sysProperties;
+            logger.warn("no sourcesProperties.", e);
+        }
+        return allProperties;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    private class RegexStringValueResolver implements StringValueResolver {
+        StringValueResolver origValueResolver;
+        PropertyPlaceholderHelper.PlaceholderResolver keyResolver;
+        Properties allProperties;
+        // 表达式 -> 分类结果, 表达式来自注解和 bean 定义, 数量有限
+        private final Map<String, Compiled> compiled = new ConcurrentHashMap<>(256);
+
+        RegexStringValueResolver(StringValueResolver origValueResolver, PropertyPlaceholderHelper.PlaceholderResolver keyResolver,
+                                 Properties allProperties) {
+            this.origValueResolver = origValueResolver;
+            this.keyResolver = keyResolver;
+            this.allProperties = allProperties;
+        }
+
+        synchronized void update(Properties properties) {
+            allProperties = properties;
+        }
+
+        synchronized Properties allProperties() {
+            if (allProperties == null) {
+                allProperties = loadAllProperties();
+            }
+            return allProperties;
+        }
+
+        @Override
+        public String resolveStringValue(String strVal) {
+            Compiled c = compiled.get(strVal);
+            if (c == null) {
+                c = compile(strVal);
+            }
+            PlaceholderExpression expression = c.expression;
+            switch (expression.kind) {
+                case LITERAL:
+                    return c.literal;
+                case WILDCARD:
+                    return getMapJson(allProperties(), expression.key, origValueResolver);
+                case SIMPLE:
+                    // 按 key 直接取值; 取到的值 (可能有嵌套占位符) 和取不到时的原表达式仍交给原来的 resolver,
+                    // ignoreUnresolvablePlaceholders、trimValues、nullValue 不变
+                    String value = keyResolver.resolvePlaceholder(expression.key);
+                    if (value == null) {
+                        value = expression.defaultValue;
+                    }
+                    return origValueResolver.resolveStringValue(value != null ? value : strVal);
+                default:
+                    return origValueResolver.resolveStringValue(strVal);
+            }
+        }
+
+        private Compiled compile(String strVal) {
+            PlaceholderExpression expression = PlaceholderExpression.compile(strVal);
+            // 没有占位符的结果和配置无关 (只受 nullValue/trimValues 影响), 算一次
+            Compiled c = new Compiled(expression, expression.kind == PlaceholderExpression.Kind.LITERAL
+                    ? origValueResolver.resolveStringValue(strVal) : null);
+            if (expression.kind == PlaceholderExpression.Kind.WILDCARD) {
+                patternLikeKeys.add(expression.key);
+            }
+            if (compiled.size() < MAX_COMPILED) {
+                compiled.put(strVal, c);
+            }
+            return c;
+        }
+
+    }
+
+    private static final int MAX_COMPILED = 4096;
+
+    private static class Compiled {
+        final PlaceholderExpression expression;
+        final String literal;
+
+        Compiled(PlaceholderExpression expression, String literal) {
+            this.expression = expression;
+            this.literal = literal;
+        }
+    }
+
+    private static boolean isSimpleLikePattern(String strVal) {
+        return strVal.indexOf('*') >= 0;
+    }
+
+    static String getMapJson(Properties properties, String regex, StringValueResolver origValueResolver) {
+        // build a json: {k1:v1, k2:v2, ...}, all keys match regex.
+        StringBuilder jsonBuilder = new StringBuilder(512);
+        // find Key match regex in properties:
+        for (Map.Entry entry : properties.entrySet()) {
+            String name = (String) entry.getKey();
+            if (PatternMatchUtils.simpleMatch(regex, name)) {
+                String v = (String) entry.getValue();
+                v = origValueResolver.resolveStringValue(v);
+                if (v == null) {
+                    // nullValue
+                    continue;
+                }
+
+                char c;
+                if (jsonBuilder.length() > 0) {
+                    jsonBuilder.append(",\"").append(name).append("\":");
+                } else {
+                    jsonBuilder.append("{\"").append(name).append("\":");
+                }
+                if (v.length() > 0 && ((c = v.charAt(0)) == '{' || c == '[')) {
+                    jsonBuilder.append(v);
+                } else {
+                    jsonBuilder.append('"').append(v).append('"');
+                }
+            }
+        }
+        jsonBuilder.append('}');
+        return jsonBuilder.toString();
+    }
+
+
+    private void putDependencyDescriptor(Map<String, Set<DependencyDescriptor>> keyToDescriptor, String key, DependencyDescriptor dependencyDescriptor) {
+        Set<DependencyDescriptor> descriptors = keyToDescriptor.get(key);
+        if (descriptors != null) {
+            descriptors.add(dependencyDescriptor);
+        } else {
+            keyToDescriptor.put(key, descriptors = new HashSet<DependencyDescriptor>());
+            descriptors.add(dependencyDescriptor);
+        }
+    }
+
+    private void putDependencyDescriptor(Map<String, Set<DependencyDescriptor>> keyToDescriptor, String key, Collection<DependencyDescriptor> dependencyDescriptor) {
+        Set<DependencyDescriptor> descriptors = keyToDescriptor.get(key);
+        if (descriptors != null) {
+            descriptors.addAll(dependencyDescriptor);
+        } else {
+            keyToDescriptor.put(key, descriptors = new HashSet<DependencyDescriptor>());
+            descriptors.addAll(dependencyDescriptor);
+        }
+    }
+
+    /**
+     * 比较新旧配置, 重新注入变更的 key 关联的 @Value 字段和 setter
+     *
+     * @param oldProperties - 旧配置, null 表示全部是新增
+     * @param newProperties - 新配置, 为空时不处理
+     */
+    public void changeBeanProperties(Properties oldProperties, Properties newProperties) {
+        if (CollectionUtils.isEmpty(newProperties)) {
+            return;
+        }
+        long diffStart = System.nanoTime();
+        // 直接按哈希比较, 不把两份配置排序成快照
+        ConfigChangeSet changes = PropertiesDiff.diff(oldProperties, newProperties);
+        List<String> placeholderKeys = new ArrayList<>();
+        newProperties.forEach((key, value) -> {
+            if (String.valueOf(value).contains("${")) {
+                placeholderKeys.add(String.valueOf(key));
+            }
+        });
+        Properties old = oldProperties != null ? oldProperties : new Properties();
+        applyDiff(withPlaceholderChanges(changes, placeholderKeys, old::getProperty, newProperties::getProperty), diffStart,
+                newProperties);
+    }
+
+    /**
+     * 同上, 直接使用快照
+     *
+     * @return 本次的变更
+     */
+    public ConfigChangeSet changeBeanProperties(ConfigSnapshot oldSnapshot, ConfigSnapshot newSnapshot) {
+        if (newSnapshot.isEmpty()) {
+            return ConfigChangeSet.EMPTY;
+        }
+        long diffStart = System.nanoTime();
+        ConfigChangeSet changes = PropertiesDiff.diff(oldSnapshot, newSnapshot);
+        int[] placeholders = newSnapshot.placeholderIndexes();
+        List<String> placeholderKeys = new ArrayList<>(placeholders.length);
+        for (int i : placeholders) {
+            placeholderKeys.add(newSnapshot.key(i));
+        }
+        changes = withPlaceholderChanges(changes, placeholderKeys, oldSnapshot::get, newSnapshot::get);
+        return applyDiff(changes, diffStart, changes.isEmpty() ? null : newSnapshot.toProperties());
+    }
+
+    private ConfigChangeSet applyDiff(ConfigChangeSet changes, long diffStart, Properties newProperties) {
+        UpdateTrace.mark(UpdateTrace.DIFF, String.valueOf(changes.size()), diffStart);
+        if (changes.isEmpty()) {
+            logger.info("配置没变更。。");
+            return changes;
+        }
+        applyChanges(changes, newProperties);
+        return changes;
+    }
+
+    /**
+     * 把分层模型算出的变更注入到 bean
+     *
+     * @return 本次的变更, 包含因为 ${...} 引用而间接变化的 key
+     */
+    @Override
+    public ConfigChangeSet applyChanges(final ConfigChangeSet changes, LayeredProperties layeredProperties) {
+        if (changes.isEmpty()) {
+            return changes;
+        }
+        Properties merged = layeredProperties.getMergedProperties();
+        PropertyPlaceholderHelper.PlaceholderResolver oldValues = k -> {
+            ConfigChange change = changes.get(k);
+            return change != null ? change.getOldValue() : merged.getProperty(k);
+        };
+        ConfigChangeSet all = withPlaceholderChanges(changes, layeredProperties.getPlaceholderKeys(), oldValues, merged::getProperty);
+        if (logger.isDebugEnabled()) {
+            for (ConfigChange change : all.getChanges()) {
+                logger.debug("{} <- {}", change, layeredProperties.sourceOf(change.getKey()));
+            }
+        }
+        applyChanges(all, merged);
+        return all;
+    }
+
+    // 值没变但引用了其他 key 的 ${...}, 解析后的结果变了也算修改
+    private ConfigChangeSet withPlaceholderChanges(ConfigChangeSet changes, Collection<String> placeholderKeys,
+                                                   PropertyPlaceholderHelper.PlaceholderResolver oldValues,
+                                                   PropertyPlaceholderHelper.PlaceholderResolver newValues) {
+        List<ConfigChange> more = null;
+        for (String k : placeholderKeys) {
+            String v = newValues.resolvePlaceholder(k);
+            if (v == null || changes.get(k) != null || !v.equals(oldValues.resolvePlaceholder(k))) {
+                continue;
+            }
+            String newV = propertyPlaceholderHelper.replacePlaceholders(v, newValues);
+            String oldV = propertyPlaceholderHelper.replacePlaceholders(v, oldValues);
+            if (!newV.equals(oldV)) {
+                if (more == null) {
+                    more = new ArrayList<>();
+                }
+                more.add(new ConfigChange(k, v, v, ConfigChange.Type.MODIFIED));
+            }
+        }
+        return more == null ? changes : changes.merge(more);
+    }
+
+    /**
+     * 把已经算好的变更注入到 bean
+     *
+     * @param changes    - 变更
+     * @param properties - 变更后的全部配置, 用来取值和解析占位符
+     */
+    public void applyChanges(ConfigChangeSet changes, Properties properties) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        logger.info("刷新配置.");
+
+        List<ConfigChange> removed = changes.getRemoved();
+        if (!removed.isEmpty()) {
+            logger.info("删除了这些配置：{}", removed);
+        }
+        List<String> changedKeys = changes.keys();
+        Map<String, Set<DependencyDescriptor>> dependencyDescriptors = dependencyDescriptors(changedKeys);
+
+        DisconfMetrics.get().recordValue(DisconfMetrics.DIFF_KEYS, null, changedKeys.size());
+        logger.info("配置发生变更: changedKeys = {}", changedKeys);
+        logger.debug("dependencyDescriptors = {}", dependencyDescriptors);
+
+        refreshBindings(changes, properties);
+        injectBeanProperties(properties, dependencyDescriptors);
+        if (regexValueResolver != null) {
+            regexValueResolver.update(properties);
+        }
+        refreshScope.refresh(changedKeys);
+    }
+
+    /**
+     * 注册配置校验, 准备阶段执行; Spring 容器里的 {@link ConfigValidator} bean 会自动注册
+     */
+    public void addValidator(ConfigValidator validator) {
+        validators.addIfAbsent(validator);
+    }
+
+    /**
+     * 准备阶段: 执行 {@link ConfigValidator}, 把变更涉及的注入点和绑定都按新值转换一遍,
+     * 有失败的就拒绝本次更新, 不会出现部分 bean 已经更新的情况; 转换好的值在注入时直接使用
+     */
+    @Override
+    public void prepare(LayeredProperties.Staged staged) throws Exception {
+        final ConfigChangeSet changes = staged.getChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        Properties candidate = staged.getProperties();
+        for (ConfigValidator validator : validators) {
+            validator.validate(changes, candidate);
+        }
+        if (beanFactory == null) {
+            return;
+        }
+        PropertyPlaceholderHelper.PlaceholderResolver oldValues = k -> {
+            ConfigChange change = changes.get(k);
+            return change != null ? change.getOldValue() : candidate.getProperty(k);
+        };
+        ConfigChangeSet all = withPlaceholderChanges(changes, staged.getPlaceholderKeys(), oldValues, candidate::getProperty);
+        InheritedValueResolver valueResolver = new InheritedValueResolver(candidate);
+        TypeConverter converter = beanFactory.getTypeConverter();
+        List<String> errors = new ArrayList<>();
+        List<DependencyDescriptor> converted = new ArrayList<>();
+        for (Map.Entry<String, Set<DependencyDescriptor>> entry : dependencyDescriptors(all.keys()).entrySet()) {
+            String key = entry.getKey(), value = resolveValue(candidate, key, valueResolver);
+            if (value == null) {
+                continue;
+            }
+            for (DependencyDescriptor descriptor : entry.getValue()) {
+                try {
+                    preparedValues.put(descriptor, new PreparedValue(value, doConvert(converter, value, descriptor)));
+                    converted.add(descriptor);
+                } catch (Exception e) {
+                    errors.add(key + " -> " + descriptor.getMember().getDeclaringClass().getName() + '.'
+                            + descriptor.getMember().getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        for (ConfigBinding<?> binding : bindings.values()) {
+            if (!all.withPrefixes(Collections.singleton(binding.getPrefix())).isEmpty()) {
+                try {
+                    binding.bind(candidate, valueResolver);
+                } catch (Exception e) {
+                    errors.add(binding.getPrefix() + "* -> " + binding.getType().getTypeName() + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            for (DependencyDescriptor descriptor : converted) {
+                preparedValues.remove(descriptor);
+            }
+            throw new IllegalArgumentException("配置不能应用到 bean: " + errors);
+        }
+    }
+
+    // 变更的 key (以及匹配的通配符) -> 注入点
+    private Map<String, Set<DependencyDescriptor>> dependencyDescriptors(List<String> changedKeys) {
+        HashMap<String, Set<DependencyDescriptor>> dependencyDescriptors = new HashMap<String, Set<DependencyDescriptor>>(changedKeys.size());
+        for (String key : changedKeys) {
+            Collection<DependencyDescriptor> descriptors = dependencies.get(key);
+            if (!descriptors.isEmpty()) {
+                putDependencyDescriptor(dependencyDescriptors, key, descriptors);
+            }
+            if (!patternLikeKeys.isEmpty()) {
+                for (String regexKey : patternLikeKeys) {
+                    if (PatternMatchUtils.simpleMatch(regexKey, key)) {
+                        logger.info("new Added key:{}, look at it with regex", key);
+                        Collection<DependencyDescriptor> cs = dependencies.get(regexKey);
+                        if (!cs.isEmpty()) {
+                            putDependencyDescriptor(dependencyDescriptors, regexKey, cs);
+                        }
+                    }
+                }
+            }
+        }
+        return dependencyDescriptors;
+    }
+
+    public RefreshScope getRefreshScope() {
+        return refreshScope;
+    }
+
+    /**
+     * 销毁 refresh bean
+     */
+    public void destroy() {
+        refreshScope.destroy();
+    }
+
+    // 记录到的实例; 没有记录的 (在本处理器注册前创建的) 只取已经创建好的单例, 不会为了注入新建实例 (prototype、没初始化的 lazy 单例)
+    private List<Object> targetBeans(Class<?> declaringClass) {
+        List<Object> beans = dependencies.instancesOf(declaringClass);
+        if (!beans.isEmpty()) {
+            return beans;
+        }
+        beans = new ArrayList<>();
+        for (String name : beanFactory.getBeanNamesForType(declaringClass, false, false)) {
+            if (beanFactory.containsSingleton(name)) {
+                Object singleton = beanFactory.getSingleton(name);
+                if (declaringClass.isInstance(singleton)) {
+                    beans.add(singleton);
+                }
+            }
+        }
+        if (beans.isEmpty()) {
+            logger.debug("no live instance of {}, skip", declaringClass.getName());
+        }
+        return beans;
+    }
+
+    void injectBeanProperties(Properties properties,//
+                                      Map<String, Set<DependencyDescriptor>> dependencyDescriptors) {
+        InheritedValueResolver valueResolver = new InheritedValueResolver(properties);
+
+        TypeConverter converter = beanFactory.getTypeConverter();
+        DisconfMetrics metrics = DisconfMetrics.get();
+        for (Map.Entry<String, Set<DependencyDescriptor>> entry :
+                dependencyDescriptors.entrySet()) {
+            String key = entry.getKey(), value = resolveValue(properties, key, valueResolver);
+            if (value != null) {
+                for (DependencyDescriptor descriptor : entry.getValue()) {
+                    long start = System.nanoTime();
+                    Field field = descriptor.getField();
+                    if (field != null) {
+                        try {
+                            Object property = convert(converter, value, descriptor);
+                            ReflectionUtils.makeAccessible(field);
+                            for (Object bean : targetBeans(field.getDeclaringClass())) {
+                                field.set(bean, property);
+                            }
+                        } catch (Exception e) {
+                            logger.warn("Fail to setFieldProperty. key={}", key, e);
+                        }
+                    } else {
+                        MethodParameter methodParameter = descriptor.getMethodParameter();
+                        if (methodParameter != null) {
+                            try {
+                                Method method = methodParameter.getMethod();
+                                Object property = convert(converter, value, descriptor);
+                                ReflectionUtils.makeAccessible(method);
+                                for (Object bean : targetBeans(method.getDeclaringClass())) {
+                                    method.invoke(bean, property);
+                                }
+                            } catch (Exception e) {
+                                logger.warn("Fail to setMethodProperty. key={}", key, e);
+                            }
+                        }
+                    }
+                    metrics.recordSince(DisconfMetrics.INJECT, descriptor.getMember().getDeclaringClass().getName(), start);
+                    UpdateTrace.mark(UpdateTrace.INJECT, key + "->" + descriptor.getMember().getDeclaringClass().getSimpleName()
+                            + '.' + descriptor.getMember().getName(), start);
+                }
+            }
+
+        }
+    }
+
+    // 占位符解析后的值, 通配符 key 取匹配的 json
+    private String resolveValue(Properties properties, String key, InheritedValueResolver valueResolver) {
+        if (isSimpleLikePattern(key)) {
+            return getMapJson(properties, key, valueResolver);
+        }
+        String value = properties.getProperty(key);
+        if (value == null) {
+            logger.warn("property not found by Key: {}", key);
+            return null;
+        }
+        return valueResolver.resolveStringValue(value);
+    }
+
+    // 准备阶段已经转换过相同的值时直接使用
+    private Object convert(TypeConverter converter, String value, DependencyDescriptor descriptor) {
+        PreparedValue prepared = preparedValues.remove(descriptor);
+        if (prepared != null && prepared.value.equals(value)) {
+            return prepared.converted;
+        }
+        return doConvert(converter, value, descriptor);
+    }
+
+    private static Object doConvert(TypeConverter converter, String value, DependencyDescriptor descriptor) {
+        Field field = descriptor.getField();
+        return field != null ? converter.convertIfNecessary(value, descriptor.getDependencyType(), field)
+                : converter.convertIfNecessary(value, descriptor.getDependencyType(), descriptor.getMethodParameter());
+    }
+
+    private static final class PreparedValue {
+        final String value;
+        final Object converted;
+
+        PreparedValue(String value, Object converted) {
+            this.value = value;
+            this.converted = converted;
+        }
+    }
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    class InheritedValueResolver implements PropertyPlaceholderHelper.PlaceholderResolver, StringValueResolver {
+        final Properties properties;
+
+        InheritedValueResolver(Properties properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public String resolvePlaceholder(String k) {
+            String v = properties.getProperty(k);
+            return v != null ? v : environment.getProperty(k);
+        }
+
+        @Override
+        public String resolveStringValue(String s) {
+            return propertyPlaceholderHelper.replacePlaceholders(s, this);
+        }
+    }
+
+}
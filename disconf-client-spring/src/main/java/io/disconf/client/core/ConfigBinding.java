@@ -0,0 +1,140 @@
+package io.disconf.client.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.parser.Feature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringValueResolver;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 绑定到一个配置前缀的不可变配置对象, 见 {@link ConfigurationBean}。
+ * 配置变更时由客户端重建整个对象再一次性替换, 读取方通过 {@link #get()} 总是拿到一致的一组值。
+ *
+ * @author houkangxi
+ */
+public final class ConfigBinding<T> {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigBinding.class);
+
+    private final String prefix;
+    private final Type type;
+    private volatile T value;
+
+    ConfigBinding(String prefix, Type type) {
+        this.prefix = prefix.endsWith(".") ? prefix : prefix + '.';
+        this.type = type;
+    }
+
+    /**
+     * 当前的配置对象, 一次 volatile 读
+     */
+    public T get() {
+        return value;
+    }
+
+    /**
+     * 前缀, 以 '.' 结尾
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * 按当前配置重建并替换; 重建失败时保留旧对象
+     *
+     * @param changedKeys - 引起重建的 key, 只用于日志 (不输出配置值)
+     * @return 是否替换成功
+     */
+    boolean refresh(Properties properties, StringValueResolver valueResolver, Collection<String> changedKeys) {
+        try {
+            value = bind(properties, valueResolver);
+            logger.debug("ConfigBinding refreshed: {}*, changed keys: {}", prefix, changedKeys);
+            return true;
+        } catch (Exception e) {
+            logger.error("Fail to bind " + prefix + "* to " + type + ", keep the old value", e);
+            return false;
+        }
+    }
+
+    T bind(Properties properties, StringValueResolver valueResolver) {
+        return JSON.parseObject(toJson(properties, prefix, valueResolver).toJSONString(), type, Feature.SupportNonPublicField);
+    }
+
+    /**
+     * 前缀下的 key 转成 json 对象: a.b-c=1 -> {"a":{"bC":"1"}}, 值是 json 的按 json 解析
+     */
+    static JSONObject toJson(Properties properties, String prefix, StringValueResolver valueResolver) {
+        JSONObject root = new JSONObject(true);
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = (String) entry.getKey();
+            if (!key.startsWith(prefix) || key.length() == prefix.length()) {
+                continue;
+            }
+            String value = (String) entry.getValue();
+            if (valueResolver != null) {
+                value = valueResolver.resolveStringValue(value);
+            }
+            String[] path = key.substring(prefix.length()).split("\\.");
+            JSONObject node = root;
+            for (int i = 0; i < path.length - 1; i++) {
+                String name = camelCase(path[i]);
+                Object child = node.get(name);
+                if (!(child instanceof JSONObject)) {
+                    child = new JSONObject(true);
+                    node.put(name, child);
+                }
+                node = (JSONObject) child;
+            }
+            node.put(camelCase(path[path.length - 1]), jsonValue(value));
+        }
+        return root;
+    }
+
+    private static Object jsonValue(String value) {
+        String json = value.trim();
+        if (json.length() > 1) {
+            char c = json.charAt(0);
+            if (c == '{') {
+                return JSON.parseObject(json);
+            }
+            if (c == '[') {
+                return JSONArray.parseArray(json);
+            }
+        }
+        return value;
+    }
+
+    // max-size, max_size -> maxSize
+    private static String camelCase(String name) {
+        if (name.indexOf('-') < 0 && name.indexOf('_') < 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean upper = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '-' || c == '_') {
+                upper = sb.length() > 0;
+            } else {
+                sb.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigBinding{" + prefix + "* -> " + type.getTypeName() + '}';
+    }
+}
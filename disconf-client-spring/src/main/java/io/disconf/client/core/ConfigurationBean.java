@@ -0,0 +1,27 @@
+package io.disconf.client.core;
+
+import java.lang.annotation.*;
+
+/**
+ * 把一组前缀相同的配置绑定到一个不可变的配置对象, 配置变更时整体重建并原子替换:
+ * <pre>
+ *   &#64;ConfigurationBean(prefix = "db.pool")
+ *   private ConfigBinding&lt;PoolConfig&gt; pool;
+ *
+ *   // 热路径: 一次 volatile 读, 拿到的 min/max/timeout 总是同一个版本的
+ *   PoolConfig config = pool.get();
+ * </pre>
+ * db.pool.min、db.pool.max-size 分别绑定到 PoolConfig 的 min、maxSize, 更深的层级绑定到嵌套对象;
+ * 配置对象可以只有 final 字段和全参构造方法。也可以标注在配置类上, 字段上不指定 prefix 时使用配置类上的。
+ *
+ * @author houkangxi
+ */
+@Target({ElementType.FIELD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConfigurationBean {
+    /**
+     * 配置 key 的前缀, 如 db.pool
+     */
+    String prefix() default "";
+}
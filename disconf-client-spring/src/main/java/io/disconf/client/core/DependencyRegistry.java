@@ -0,0 +1,146 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.core.MethodParameter;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 配置 key 和注入点的对应关系, 以及注入点所在类的 bean 实例。
+ * <p>
+ * 同一个注入点(字段或方法参数)只记一次, 不随 prototype bean 的创建次数增长;
+ * bean 实例用弱引用记录, 被回收后通过 ReferenceQueue 清理, 所以只会注入到还活着的实例上。
+ *
+ * @author houkangxi
+ */
+class DependencyRegistry {
+    // 注入点数
+    static final String SIZE = "dependency.size";
+    // 记录的 bean 实例数
+    static final String INSTANCES = "dependency.instances";
+
+    // key -> 注入点 -> 描述
+    private final Map<String, Map<Object, DependencyDescriptor>> keyToPoints = new ConcurrentHashMap<>();
+    // 有注入点的类
+    private final Set<Class<?>> declaringClasses = ConcurrentHashMap.newKeySet();
+    // bean 的类 -> 实例
+    private final Map<Class<?>, Set<BeanRef>> instances = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final AtomicInteger pointCount = new AtomicInteger();
+    private final AtomicInteger instanceCount = new AtomicInteger();
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+
+    /**
+     * 记录 key 的注入点, 已经记录过的忽略
+     */
+    void add(String key, DependencyDescriptor descriptor) {
+        if (descriptor.getField() == null && descriptor.getMethodParameter().getMethod() == null) {
+            // 构造方法参数, 变更时无法重新注入
+            return;
+        }
+        Map<Object, DependencyDescriptor> points = keyToPoints.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        if (points.putIfAbsent(pointOf(descriptor), descriptor) == null) {
+            declaringClasses.add(descriptor.getMember().getDeclaringClass());
+            metrics.gauge(SIZE, pointCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * key 的所有注入点
+     */
+    Collection<DependencyDescriptor> get(String key) {
+        Map<Object, DependencyDescriptor> points = keyToPoints.get(key);
+        return points == null ? Collections.emptyList() : points.values();
+    }
+
+    /**
+     * 记录 bean 实例, 类上没有注入点的不记录
+     */
+    void track(Object bean) {
+        expunge();
+        Class<?> type = bean.getClass();
+        if (!hasPoints(type)) {
+            return;
+        }
+        instances.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).add(new BeanRef(bean, type, queue));
+        metrics.gauge(INSTANCES, instanceCount.incrementAndGet());
+    }
+
+    private boolean hasPoints(Class<?> type) {
+        for (Class<?> declaringClass : declaringClasses) {
+            if (declaringClass.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 还活着的、是 declaringClass 类型的 bean 实例
+     */
+    List<Object> instancesOf(Class<?> declaringClass) {
+        expunge();
+        List<Object> list = new ArrayList<>(2);
+        for (Map.Entry<Class<?>, Set<BeanRef>> entry : instances.entrySet()) {
+            if (declaringClass.isAssignableFrom(entry.getKey())) {
+                for (BeanRef ref : entry.getValue()) {
+                    Object bean = ref.get();
+                    if (bean != null) {
+                        list.add(bean);
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    int size() {
+        return pointCount.get();
+    }
+
+    int instanceCount() {
+        expunge();
+        return instanceCount.get();
+    }
+
+    // 清理已经被回收的实例
+    private void expunge() {
+        boolean changed = false;
+        for (Reference<?> ref; (ref = queue.poll()) != null; ) {
+            Set<BeanRef> refs = instances.get(((BeanRef) ref).type);
+            if (refs != null && refs.remove(ref)) {
+                instanceCount.decrementAndGet();
+                changed = true;
+            }
+        }
+        if (changed) {
+            metrics.gauge(INSTANCES, instanceCount.get());
+        }
+    }
+
+    // 注入点: 字段, 或者方法/构造方法 + 参数位置
+    private static Object pointOf(DependencyDescriptor descriptor) {
+        Field field = descriptor.getField();
+        if (field != null) {
+            return field;
+        }
+        MethodParameter parameter = descriptor.getMethodParameter();
+        return Arrays.asList(parameter.getExecutable(), parameter.getParameterIndex());
+    }
+
+    private static class BeanRef extends WeakReference<Object> {
+        final Class<?> type;
+
+        BeanRef(Object bean, Class<?> type, ReferenceQueue<Object> queue) {
+            super(bean, queue);
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.disconf.client.core;
+
+import org.springframework.beans.factory.config.PlaceholderConfigurerSupport;
+
+/**
+ * 预先分类好的 &#64;Value 表达式, 每个表达式只扫描一次:
+ * <ul>
+ * <li>LITERAL: 没有占位符</li>
+ * <li>SIMPLE: ${key} 或 ${key:默认值}, 直接按 key 取值</li>
+ * <li>WILDCARD: ${a.*}, 取所有匹配的 key 拼成 json</li>
+ * <li>NESTED: 其他 (嵌套、拼接多个占位符等), 交给完整的占位符解析</li>
+ * </ul>
+ *
+ * @author houkangxi
+ */
+final class PlaceholderExpression {
+    private static final String PREFIX = PlaceholderConfigurerSupport.DEFAULT_PLACEHOLDER_PREFIX;
+    private static final String SUFFIX = PlaceholderConfigurerSupport.DEFAULT_PLACEHOLDER_SUFFIX;
+    private static final String SEPARATOR = PlaceholderConfigurerSupport.DEFAULT_VALUE_SEPARATOR;
+
+    enum Kind {
+        LITERAL, SIMPLE, WILDCARD, NESTED
+    }
+
+    final Kind kind;
+    // SIMPLE/WILDCARD 的 key
+    final String key;
+    // SIMPLE 的默认值, 没有为 null
+    final String defaultValue;
+
+    private PlaceholderExpression(Kind kind, String key, String defaultValue) {
+        this.kind = kind;
+        this.key = key;
+        this.defaultValue = defaultValue;
+    }
+
+    static PlaceholderExpression compile(String strVal) {
+        int start = strVal.indexOf(PREFIX);
+        if (start < 0) {
+            return new PlaceholderExpression(Kind.LITERAL, null, null);
+        }
+        if (start == 0 && strVal.endsWith(SUFFIX)) {
+            String placeholder = strVal.substring(PREFIX.length(), strVal.length() - SUFFIX.length());
+            if (placeholder.indexOf(PREFIX) < 0 && placeholder.indexOf(SUFFIX) < 0) {
+                int separator = placeholder.indexOf(SEPARATOR);
+                String key = separator < 0 ? placeholder : placeholder.substring(0, separator);
+                if (key.indexOf('*') >= 0) {
+                    if (separator < 0) {
+                        return new PlaceholderExpression(Kind.WILDCARD, key, null);
+                    }
+                } else if (!key.isEmpty()) {
+                    return new PlaceholderExpression(Kind.SIMPLE, key,
+                            separator < 0 ? null : placeholder.substring(separator + SEPARATOR.length()));
+                }
+            }
+        }
+        return new PlaceholderExpression(Kind.NESTED, null, null);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (key == null ? "" : "(" + key + (defaultValue == null ? "" : ":" + defaultValue) + ")");
+    }
+}
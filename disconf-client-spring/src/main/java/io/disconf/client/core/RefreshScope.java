@@ -0,0 +1,421 @@
+package io.disconf.client.core;
+
+import io.disconf.client.metrics.DisconfMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.config.Scope;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可刷新的 bean 作用域 ({@link RefreshScoped}): 只能在构造时读取配置的 bean (连接池、HTTP 客户端、缓存等),
+ * 依赖的配置变更时在后台线程重新创建, 创建完成后替换代理背后的实例; 旧实例上的调用全部结束后再销毁(close/destroy)。
+ * 调用方持有的是代理, 请求线程不会等待 bean 的创建。
+ *
+ * @author houkangxi
+ */
+public class RefreshScope implements Scope {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshScope.class);
+    public static final String SCOPE_NAME = "refresh";
+    private static final ThreadLocal<Creating> CREATING = new ThreadLocal<>();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 配置 key -> 依赖它的 bean
+    private final Map<String, Set<String>> keyToBeans = new ConcurrentHashMap<>();
+    // 重建和超时销毁都在这个线程上, 按顺序执行
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "disconf-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final long drainTimeoutMillis = Long.getLong("disconf.refresh.drain.timeout", 60000);
+    private final DisconfMetrics metrics = DisconfMetrics.get();
+
+    /**
+     * 把作用域为 refresh 的 bean 定义改为代理 + scopedTarget.xxx 目标 bean
+     */
+    public static void registerProxies(BeanDefinitionRegistry registry) {
+        for (String name : registry.getBeanDefinitionNames()) {
+            BeanDefinition definition = registry.getBeanDefinition(name);
+            if (!SCOPE_NAME.equals(definition.getScope()) || ScopedProxyUtils.isScopedTarget(name)) {
+                continue;
+            }
+            String targetName = ScopedProxyUtils.getTargetBeanName(name);
+            RootBeanDefinition proxy = new RootBeanDefinition(ProxyFactoryBean.class);
+            proxy.getPropertyValues().add("targetBeanName", targetName);
+            proxy.setDecoratedDefinition(new BeanDefinitionHolder(definition, targetName));
+            proxy.setOriginatingBeanDefinition(definition);
+            proxy.setRole(definition.getRole());
+            proxy.setPrimary(definition.isPrimary());
+            proxy.setAutowireCandidate(definition.isAutowireCandidate());
+            if (definition instanceof AbstractBeanDefinition) {
+                proxy.copyQualifiersFrom((AbstractBeanDefinition) definition);
+            }
+            // 只能通过代理注入
+            definition.setAutowireCandidate(false);
+            definition.setPrimary(false);
+            registry.removeBeanDefinition(name);
+            registry.registerBeanDefinition(targetName, definition);
+            registry.registerBeanDefinition(name, proxy);
+            logger.info("refresh scope bean: {}", name);
+        }
+    }
+
+    @Override
+    public Object get(String name, ObjectFactory<?> objectFactory) {
+        Entry entry = entries.computeIfAbsent(name, k -> new Entry(objectFactory));
+        Instance current = entry.current;
+        if (current != null) {
+            return current.bean;
+        }
+        synchronized (entry) {
+            if (entry.current == null) {
+                entry.current = create(name, entry);
+            }
+            return entry.current.bean;
+        }
+    }
+
+    private Instance create(String name, Entry entry) {
+        Creating previous = CREATING.get();
+        Creating creating = new Creating(name);
+        CREATING.set(creating);
+        try {
+            Instance instance = new Instance(entry.objectFactory.getObject());
+            instance.destructionCallback = creating.destructionCallback;
+            return instance;
+        } finally {
+            if (previous != null) {
+                CREATING.set(previous);
+            } else {
+                CREATING.remove();
+            }
+        }
+    }
+
+    /**
+     * 当前线程正在创建的 refresh bean, 用于记录它依赖的配置 key; 没有返回 null
+     */
+    public String currentlyCreating() {
+        Creating creating = CREATING.get();
+        return creating == null ? null : creating.name;
+    }
+
+    /**
+     * 记录 bean 依赖的配置 key, key 可以是 a.* 这样的通配
+     */
+    public void registerDependency(String key, String name) {
+        keyToBeans.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(name);
+    }
+
+    /**
+     * 依赖了这些 key 的 bean 在后台重建
+     *
+     * @return 需要重建的 bean
+     */
+    public Set<String> refresh(Collection<String> changedKeys) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String key : changedKeys) {
+            Set<String> beans = keyToBeans.get(key);
+            if (beans != null) {
+                names.addAll(beans);
+            }
+        }
+        for (Map.Entry<String, Set<String>> e : keyToBeans.entrySet()) {
+            if (e.getKey().indexOf('*') >= 0) {
+                for (String key : changedKeys) {
+                    if (PatternMatchUtils.simpleMatch(e.getKey(), key)) {
+                        names.addAll(e.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+        for (String name : names) {
+            refresh(name);
+        }
+        return names;
+    }
+
+    /**
+     * 在后台重建 bean, 已经在排队的不重复提交
+     */
+    public void refresh(String name) {
+        if (!entries.containsKey(name) || !pending.add(name)) {
+            return;
+        }
+        executor.execute(() -> {
+            pending.remove(name);
+            rebuild(name);
+        });
+    }
+
+    private void rebuild(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Instance instance;
+        try {
+            instance = create(name, entry);
+        } catch (Exception e) {
+            metrics.increment(DisconfMetrics.REFRESH_ERROR, name, 1);
+            logger.error("Fail to rebuild refresh scope bean, keep the old one: " + name, e);
+            return;
+        }
+        Instance old;
+        synchronized (entry) {
+            old = entry.current;
+            // 先放进 retiring 再替换, 否则这期间结束的调用找不到旧实例, 计数永远不归零
+            if (old != null) {
+                entry.retiring.add(old);
+            }
+            entry.current = instance;
+        }
+        metrics.recordSince(DisconfMetrics.REFRESH, name, start);
+        logger.info("refresh scope bean rebuilt: {}", name);
+        if (old != null) {
+            retire(name, old);
+        }
+    }
+
+    private void retire(String name, Instance old) {
+        old.retired = true;
+        if (old.inFlight.get() == 0) {
+            old.destroy(name);
+        } else {
+            // 有调用一直不结束时, 超时后强制销毁
+            executor.schedule(() -> old.destroy(name), drainTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 取当前实例并计数, 调用结束后 release
+    Object acquire(String name, BeanFactory beanFactory) {
+        while (true) {
+            Entry entry = entries.get(name);
+            Instance instance = entry == null ? null : entry.current;
+            if (instance == null) {
+                // 第一次使用, 同步创建
+                beanFactory.getBean(name);
+                continue;
+            }
+            instance.inFlight.incrementAndGet();
+            if (!instance.retired) {
+                return instance.bean;
+            }
+            release(name, instance);
+        }
+    }
+
+    void release(String name, Object bean) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return;
+        }
+        Instance instance = entry.find(bean);
+        if (instance != null) {
+            release(name, instance);
+        }
+    }
+
+    private void release(String name, Instance instance) {
+        if (instance.inFlight.decrementAndGet() == 0 && instance.retired) {
+            instance.destroy(name);
+        }
+    }
+
+    @Override
+    public Object remove(String name) {
+        Entry entry = entries.remove(name);
+        if (entry == null || entry.current == null) {
+            return null;
+        }
+        retire(name, entry.current);
+        return entry.current.bean;
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback) {
+        Creating creating = CREATING.get();
+        if (creating != null && creating.name.equals(name)) {
+            creating.destructionCallback = callback;
+        }
+    }
+
+    @Override
+    public Object resolveContextualObject(String key) {
+        return null;
+    }
+
+    @Override
+    public String getConversationId() {
+        return null;
+    }
+
+    /**
+     * 销毁所有实例
+     */
+    public void destroy() {
+        for (String name : new ArrayList<>(entries.keySet())) {
+            remove(name);
+        }
+        executor.shutdown();
+    }
+
+    private static class Creating {
+        final String name;
+        Runnable destructionCallback;
+
+        Creating(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Entry {
+        final ObjectFactory<?> objectFactory;
+        volatile Instance current;
+        // 还有调用没结束的旧实例
+        final List<Instance> retiring = new CopyOnWriteArrayList<>();
+
+        Entry(ObjectFactory<?> objectFactory) {
+            this.objectFactory = objectFactory;
+        }
+
+        Instance find(Object bean) {
+            Instance instance = current;
+            if (instance != null && instance.bean == bean) {
+                return instance;
+            }
+            for (Instance old : retiring) {
+                if (old.bean == bean) {
+                    return old;
+                }
+            }
+            return null;
+        }
+    }
+
+    private class Instance {
+        final Object bean;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean destroyed = new AtomicBoolean();
+        volatile boolean retired;
+        Runnable destructionCallback;
+
+        Instance(Object bean) {
+            this.bean = bean;
+        }
+
+        void destroy(String name) {
+            if (!destroyed.compareAndSet(false, true)) {
+                return;
+            }
+            Entry entry = entries.get(name);
+            if (entry != null) {
+                entry.retiring.remove(this);
+            }
+            try {
+                if (destructionCallback != null) {
+                    destructionCallback.run();
+                } else if (bean instanceof AutoCloseable) {
+                    ((AutoCloseable) bean).close();
+                }
+                logger.info("refresh scope bean destroyed: {}@{}", name, Integer.toHexString(System.identityHashCode(bean)));
+            } catch (Exception e) {
+                logger.warn("Fail to destroy refresh scope bean: " + name, e);
+            }
+        }
+    }
+
+    /**
+     * refresh bean 的代理, 每次调用转发到当前实例
+     */
+    public static class ProxyFactoryBean implements FactoryBean<Object>, BeanFactoryAware {
+        private String targetBeanName;
+        private ConfigurableBeanFactory beanFactory;
+        private Object proxy;
+
+        public void setTargetBeanName(String targetBeanName) {
+            this.targetBeanName = targetBeanName;
+        }
+
+        @Override
+        public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+            this.beanFactory = (ConfigurableBeanFactory) beanFactory;
+        }
+
+        @Override
+        public synchronized Object getObject() {
+            if (proxy == null) {
+                RefreshScope scope = (RefreshScope) beanFactory.getRegisteredScope(SCOPE_NAME);
+                ProxyFactory factory = new ProxyFactory();
+                factory.setProxyTargetClass(true);
+                factory.setTargetSource(new RefreshTargetSource(scope, targetBeanName, beanFactory));
+                proxy = factory.getProxy(beanFactory.getBeanClassLoader());
+            }
+            return proxy;
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return beanFactory == null ? null : beanFactory.getType(targetBeanName);
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+
+    private static class RefreshTargetSource implements TargetSource {
+        final RefreshScope scope;
+        final String targetBeanName;
+        final BeanFactory beanFactory;
+
+        RefreshTargetSource(RefreshScope scope, String targetBeanName, BeanFactory beanFactory) {
+            this.scope = scope;
+            this.targetBeanName = targetBeanName;
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public Class<?> getTargetClass() {
+            return beanFactory.getType(targetBeanName);
+        }
+
+        @Override
+        public boolean isStatic() {
+            return false;
+        }
+
+        @Override
+        public Object getTarget() {
+            return scope.acquire(targetBeanName, beanFactory);
+        }
+
+        @Override
+        public void releaseTarget(Object target) {
+            scope.release(targetBeanName, target);
+        }
+    }
+}
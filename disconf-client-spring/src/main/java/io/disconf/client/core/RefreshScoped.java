@@ -0,0 +1,18 @@
+package io.disconf.client.core;
+
+import org.springframework.context.annotation.Scope;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在 bean 类或 &#64;Bean 方法上: bean 依赖的 &#64;Value 配置变更时在后台重新创建, 注入的是代理,
+ * 新实例创建完成后切换, 旧实例上的调用结束后销毁。适合只在构造时读取配置的 bean, 见 {@link RefreshScope}。
+ *
+ * @author houkangxi
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Scope(RefreshScope.SCOPE_NAME)
+public @interface RefreshScoped {
+}
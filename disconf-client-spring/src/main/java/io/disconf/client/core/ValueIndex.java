@@ -0,0 +1,127 @@
+package io.disconf.client.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译时生成的 &#64;Value 注入点索引 (disconf-client-value-index 注解处理器), 没有时为空。
+ * 在索引里的类启动时直接登记注入点, 创建 bean 时不再解析占位符。
+ *
+ * @author houkangxi
+ */
+class ValueIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ValueIndex.class);
+    // 和 ValueIndexProcessor.INDEX_LOCATION 一致
+    static final String LOCATION = "META-INF/disconf/value.index";
+    static final ValueIndex EMPTY = new ValueIndex(Collections.emptyList());
+
+    private final List<String[]> entries;
+    // 注入点已经登记好的类
+    private final Set<Class<?>> indexedClasses = new HashSet<>();
+
+    private ValueIndex(List<String[]> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * 读取 classpath 上所有的索引文件
+     */
+    static ValueIndex load(ClassLoader classLoader) {
+        List<String[]> entries = new ArrayList<>();
+        try {
+            Enumeration<URL> urls = classLoader != null ? classLoader.getResources(LOCATION) : ClassLoader.getSystemResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    for (String line; (line = reader.readLine()) != null; ) {
+                        if (line.isEmpty() || line.charAt(0) == '#') {
+                            continue;
+                        }
+                        String[] parts = line.split("\t");
+                        if (parts.length >= 4) {
+                            entries.add(parts);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Fail to read " + LOCATION, e);
+            return EMPTY;
+        }
+        return entries.isEmpty() ? EMPTY : new ValueIndex(entries);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * 把索引里的注入点登记到 registry; 找不到的类或成员跳过, 这些类仍然在运行时解析
+     *
+     * @return 登记的注入点数
+     */
+    int register(DependencyRegistry registry, ClassLoader classLoader) {
+        Map<String, Class<?>> classes = new HashMap<>();
+        Set<String> broken = new HashSet<>();
+        List<Object[]> resolved = new ArrayList<>(entries.size());
+        for (String[] entry : entries) {
+            String className = entry[2];
+            if (broken.contains(className)) {
+                continue;
+            }
+            try {
+                Class<?> type = classes.get(className);
+                if (type == null) {
+                    type = ClassUtils.forName(className, classLoader);
+                    classes.put(className, type);
+                }
+                DependencyDescriptor descriptor;
+                if ("F".equals(entry[1])) {
+                    Field field = type.getDeclaredField(entry[3]);
+                    descriptor = new DependencyDescriptor(field, true);
+                } else {
+                    Method method = type.getDeclaredMethod(entry[3], ClassUtils.forName(entry[4], classLoader));
+                    descriptor = new DependencyDescriptor(new MethodParameter(method, 0), true);
+                }
+                resolved.add(new Object[]{entry[0], descriptor});
+            } catch (Throwable e) {
+                // 索引和类对不上 (比如增量编译), 整个类退回运行时解析
+                logger.debug("skip value index of {}: {}", className, e.toString());
+                broken.add(className);
+            }
+        }
+        int count = 0;
+        for (Object[] item : resolved) {
+            DependencyDescriptor descriptor = (DependencyDescriptor) item[1];
+            Class<?> type = descriptor.getMember().getDeclaringClass();
+            // refresh bean 整体重建, 依赖在创建时记录
+            if (broken.contains(type.getName()) || AnnotationUtils.findAnnotation(type, RefreshScoped.class) != null) {
+                continue;
+            }
+            registry.add((String) item[0], descriptor);
+            indexedClasses.add(type);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 类的注入点是否已经从索引登记
+     */
+    boolean isIndexed(Class<?> type) {
+        return indexedClasses.contains(type);
+    }
+}
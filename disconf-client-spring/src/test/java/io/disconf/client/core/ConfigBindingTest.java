@@ -0,0 +1,74 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+import org.springframework.util.StringValueResolver;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class ConfigBindingTest {
+
+    public static final class PoolConfig {
+        private final int min;
+        private final int maxSize;
+        private final long timeout;
+        private final List<String> hosts;
+        private final Retry retry;
+
+        public PoolConfig(int min, int maxSize, long timeout, List<String> hosts, Retry retry) {
+            this.min = min;
+            this.maxSize = maxSize;
+            this.timeout = timeout;
+            this.hosts = hosts;
+            this.retry = retry;
+        }
+    }
+
+    public static final class Retry {
+        private final int times;
+
+        public Retry(int times) {
+            this.times = times;
+        }
+    }
+
+    private static Properties props(String... kv) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kv.length; i += 2) {
+            properties.setProperty(kv[i], kv[i + 1]);
+        }
+        return properties;
+    }
+
+    @Test
+    public void test_bind_immutable() {
+        ConfigBinding<PoolConfig> binding = new ConfigBinding<>("db.pool", PoolConfig.class);
+        assertEquals("db.pool.", binding.getPrefix());
+        Properties properties = props("db.pool.min", "2", "db.pool.max-size", "${pool.max}", "db.pool.timeout", "3000",
+                "db.pool.hosts", "[\"a\",\"b\"]", "db.pool.retry.times", "3", "db.url", "jdbc:x", "pool.max", "20");
+        StringValueResolver resolver = s -> s.replace("${pool.max}", properties.getProperty("pool.max"));
+        assertTrue(binding.refresh(properties, resolver, Collections.emptyList()));
+        PoolConfig first = binding.get();
+        assertEquals(2, first.min);
+        assertEquals(20, first.maxSize);
+        assertEquals(3000L, first.timeout);
+        assertEquals(2, first.hosts.size());
+        assertEquals(3, first.retry.times);
+
+        // 整体替换, 旧对象不变
+        properties.setProperty("db.pool.min", "5");
+        assertTrue(binding.refresh(properties, resolver, Collections.singletonList("db.pool.min")));
+        assertEquals(5, binding.get().min);
+        assertEquals(2, first.min);
+        assertNotSame(first, binding.get());
+
+        // 绑定失败保留旧对象
+        PoolConfig current = binding.get();
+        properties.setProperty("db.pool.min", "not-a-number");
+        assertFalse(binding.refresh(properties, resolver, Collections.singletonList("db.pool.min")));
+        assertSame(current, binding.get());
+    }
+}
@@ -0,0 +1,118 @@
+package io.disconf.client.core;
+
+import io.disconf.client.DisConfPropertyConfigurer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class ConfigNamespaceTest {
+
+    // 没有 disconf.properties, 本地模式
+    static class LocalConfigurer extends DisConfPropertyConfigurer {
+        LocalConfigurer(ConfigNamespace... namespaces) {
+            super("myApp", new DefaultResourceLoader(), Arrays.asList(namespaces));
+        }
+
+        @Override
+        protected Properties readDisConfProperties(String path, ResourceLoader resourceLoader) {
+            return null;
+        }
+
+        Properties merged() throws IOException {
+            return mergeProperties();
+        }
+    }
+
+    static class Title {
+        @Value("${app.title}")
+        String title;
+    }
+
+    // configurer 启动时会在工作目录创建 conf/app.properties
+    private static final File LOCAL_CONF = new File("conf/app.properties");
+    private boolean localConfExisted;
+
+    @Before
+    public void setUp() {
+        localConfExisted = LOCAL_CONF.exists();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("disconf.local.watch");
+        if (!localConfExisted) {
+            LOCAL_CONF.delete();
+            // 目录不为空时不删
+            LOCAL_CONF.getParentFile().delete();
+        }
+    }
+
+    @Test
+    public void test_name() {
+        ConfigNamespace common = new ConfigNamespace("common", "common.properties");
+        assertEquals("common_1_0_0_0_rd", common.getName("1_0_0_0", "rd"));
+        common.setEnv("online");
+        assertEquals("/disconf/common_1_0_0_0_online/file/", common.getNodePrefix("1_0_0_0", "rd"));
+        assertEquals("common_1_0_0_0_online", ConfigNamespace.nameOf(common.getNodePrefix("1_0_0_0", "rd") + "common.properties"));
+        assertNull(ConfigNamespace.nameOf("local"));
+        assertNull(ConfigNamespace.nameOf("/disconf/app"));
+    }
+
+    @Test
+    public void test_precedence() throws IOException {
+        System.setProperty("disconf.local.watch", "false");
+        ConfigNamespace app = new ConfigNamespace("myApp", "settings.properties");
+        ConfigNamespace common = new ConfigNamespace("common", "common.properties");
+        common.setPrecedence(-1);
+        // 声明顺序在前, 但 precedence 更低, 应用配置覆盖公共配置
+        Properties merged = new LocalConfigurer(app, common).merged();
+        assertEquals("someGame", merged.getProperty("app.title"));
+        assertEquals("3000", merged.getProperty("common.timeout"));
+
+        common.setPrecedence(1);
+        merged = new LocalConfigurer(app, common).merged();
+        assertEquals("commonTitle", merged.getProperty("app.title"));
+    }
+
+    @Test
+    public void test_value_resolution() throws Exception {
+        System.setProperty("disconf.local.watch", "false");
+        LocalConfigurer configurer = new LocalConfigurer(new ConfigNamespace("myApp", "settings.properties"));
+        Properties extra = new Properties();
+        extra.setProperty("app.padded", " padded ");
+        extra.setProperty("app.none", "@null");
+        configurer.setProperties(extra);
+        configurer.setNullValue("@null");
+        configurer.setTrimValues(true);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        // 先注册的 resolver 排在前面, @Value 仍按本 configurer 的配置解析
+        beanFactory.addEmbeddedValueResolver(strVal -> "${app.title}".equals(strVal) ? "stale" : strVal);
+        configurer.postProcessBeanFactory(beanFactory);
+        assertEquals("someGame", beanFactory.getAutowireCandidateResolver()
+                .getSuggestedValue(new DependencyDescriptor(Title.class.getDeclaredField("title"), true)));
+
+        // ${key} 直接查找后仍按 configurer 的 trimValues/nullValue/ignoreUnresolvablePlaceholders 处理
+        assertEquals("padded", beanFactory.resolveEmbeddedValue("${app.padded}"));
+        assertNull(beanFactory.resolveEmbeddedValue("${app.none}"));
+        assertEquals("someGame", beanFactory.resolveEmbeddedValue("${app.missing:${app.title}}"));
+        assertEquals("{\"app.pool.min\":\"1\",\"app.pool.max\":\"10\"}".length(),
+                beanFactory.resolveEmbeddedValue("${app.pool.*}").length());
+        try {
+            beanFactory.resolveEmbeddedValue("${app.missing}");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
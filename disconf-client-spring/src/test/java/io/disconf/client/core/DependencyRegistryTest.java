@@ -0,0 +1,57 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.core.MethodParameter;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DependencyRegistryTest {
+
+    static class Target {
+        String title;
+        int size;
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+    }
+
+    static class SubTarget extends Target {
+    }
+
+    @Test
+    public void test_dedup_and_weak_instances() throws Exception {
+        DependencyRegistry registry = new DependencyRegistry();
+        // 每创建一个 prototype 都会有一个新的 DependencyDescriptor
+        for (int i = 0; i < 100; i++) {
+            registry.add("app.title", new DependencyDescriptor(Target.class.getDeclaredField("title"), true));
+            registry.add("app.size", new DependencyDescriptor(
+                    new MethodParameter(Target.class.getMethod("setSize", int.class), 0), true));
+        }
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.get("app.title").size());
+        assertTrue(registry.get("other").isEmpty());
+
+        Target singleton = new Target();
+        registry.track(singleton);
+        registry.track("no injection point");
+        for (int i = 0; i < 1000; i++) {
+            registry.track(new SubTarget());
+        }
+        assertTrue(registry.instancesOf(Target.class).contains(singleton));
+
+        // 被回收的实例会被清理
+        long deadline = System.currentTimeMillis() + 10000;
+        while (registry.instanceCount() > 1 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, registry.instanceCount());
+        List<Object> live = registry.instancesOf(Target.class);
+        assertEquals(1, live.size());
+        assertSame(singleton, live.get(0));
+    }
+}
@@ -0,0 +1,39 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlaceholderExpressionTest {
+
+    private static PlaceholderExpression.Kind kind(String strVal) {
+        return PlaceholderExpression.compile(strVal).kind;
+    }
+
+    @Test
+    public void test_compile() {
+        assertEquals(PlaceholderExpression.Kind.LITERAL, kind("plain text"));
+        assertEquals(PlaceholderExpression.Kind.LITERAL, kind("#{1 + 1}"));
+
+        PlaceholderExpression simple = PlaceholderExpression.compile("${app.title}");
+        assertEquals(PlaceholderExpression.Kind.SIMPLE, simple.kind);
+        assertEquals("app.title", simple.key);
+        assertNull(simple.defaultValue);
+
+        PlaceholderExpression withDefault = PlaceholderExpression.compile("${app.port:8080}");
+        assertEquals(PlaceholderExpression.Kind.SIMPLE, withDefault.kind);
+        assertEquals("app.port", withDefault.key);
+        assertEquals("8080", withDefault.defaultValue);
+        assertEquals("", PlaceholderExpression.compile("${app.port:}").defaultValue);
+
+        PlaceholderExpression wildcard = PlaceholderExpression.compile("${app.user.hobby.*}");
+        assertEquals(PlaceholderExpression.Kind.WILDCARD, wildcard.kind);
+        assertEquals("app.user.hobby.*", wildcard.key);
+
+        assertEquals(PlaceholderExpression.Kind.NESTED, kind("${a:${b}}"));
+        assertEquals(PlaceholderExpression.Kind.NESTED, kind("${${env}.url}"));
+        assertEquals(PlaceholderExpression.Kind.NESTED, kind("jdbc:${db.host}"));
+        assertEquals(PlaceholderExpression.Kind.NESTED, kind("${a}${b}"));
+        assertEquals(PlaceholderExpression.Kind.NESTED, kind("${a.*:{}}"));
+    }
+}
@@ -0,0 +1,198 @@
+package io.disconf.client.core;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.util.PropertyPlaceholderHelper;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class RefreshScopeTest {
+    static final AtomicInteger SEQ = new AtomicInteger();
+    static volatile boolean fail;
+
+    public static class Client implements Closeable {
+        final int id = SEQ.incrementAndGet();
+        volatile boolean closed;
+
+        public Client() {
+            if (fail) {
+                throw new IllegalStateException("bad config");
+            }
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public int await(CountDownLatch entered, CountDownLatch latch) throws InterruptedException {
+            entered.countDown();
+            latch.await();
+            return id;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public static class Timeout {
+        @Value("${http.timeout}")
+        int timeout;
+
+        public int timeout() {
+            return timeout;
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void test_rebuild_and_drain() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RefreshScope scope = new RefreshScope();
+        beanFactory.registerScope(RefreshScope.SCOPE_NAME, scope);
+        RootBeanDefinition definition = new RootBeanDefinition(Client.class);
+        definition.setScope(RefreshScope.SCOPE_NAME);
+        beanFactory.registerBeanDefinition("client", definition);
+        RefreshScope.registerProxies(beanFactory);
+
+        Client client = beanFactory.getBean(Client.class);
+        assertSame(client, beanFactory.getBean("client"));
+        int first = client.id();
+        assertEquals(first, client.id());
+        Client target = (Client) beanFactory.getBean("scopedTarget.client");
+        scope.registerDependency("http.timeout", "scopedTarget.client");
+
+        // 旧实例上的调用没结束
+        CountDownLatch entered = new CountDownLatch(1), latch = new CountDownLatch(1);
+        int[] result = new int[1];
+        Thread thread = new Thread(() -> {
+            try {
+                result[0] = client.await(entered, latch);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.start();
+        entered.await();
+
+        Set<String> rebuilt = scope.refresh(Collections.singletonList("http.timeout"));
+        assertEquals(Collections.singleton("scopedTarget.client"), rebuilt);
+        waitFor(() -> client.id() != first);
+        assertFalse(target.isClosed());
+
+        latch.countDown();
+        thread.join();
+        assertEquals(first, result[0]);
+        waitFor(target::isClosed);
+
+        // 无关的 key 不重建
+        assertTrue(scope.refresh(Collections.singletonList("other")).isEmpty());
+        Client current = (Client) beanFactory.getBean("scopedTarget.client");
+        scope.destroy();
+        assertTrue(current.isClosed());
+    }
+
+    @Test
+    public void test_rebuild_failure_keeps_old() throws Exception {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RefreshScope scope = new RefreshScope();
+        beanFactory.registerScope(RefreshScope.SCOPE_NAME, scope);
+        RootBeanDefinition definition = new RootBeanDefinition(Client.class);
+        definition.setScope(RefreshScope.SCOPE_NAME);
+        beanFactory.registerBeanDefinition("client", definition);
+        RefreshScope.registerProxies(beanFactory);
+        Client client = beanFactory.getBean(Client.class);
+        int first = client.id();
+
+        // 构造失败
+        fail = true;
+        try {
+            scope.refresh("scopedTarget.client");
+            Thread.sleep(200);
+            assertEquals(first, client.id());
+        } finally {
+            fail = false;
+            scope.destroy();
+        }
+    }
+
+    @Test
+    public void test_beans_created_after_change() throws Exception {
+        LayeredProperties layered = new LayeredProperties();
+        layered.putLayer("app.properties", 0, ConfigSnapshot.of(props("http.timeout", "1")));
+        BeanPropertyChangeHandler handler = new BeanPropertyChangeHandler();
+        GenericApplicationContext context = new GenericApplicationContext();
+        AnnotationConfigUtils.registerAnnotationConfigProcessors(context);
+        handler.setEnvironment(context.getEnvironment());
+        PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper("${", "}", ":", false);
+        context.getBeanFactory().addEmbeddedValueResolver(handler.wrapValueResolver(context.getBeanFactory(),
+                strVal -> helper.replacePlaceholders(strVal, layered.getMergedProperties()),
+                key -> layered.getMergedProperties().getProperty(key), layered.getMergedProperties()));
+        context.addBeanFactoryPostProcessor(handler);
+        context.getBeanFactory().addBeanPostProcessor(handler);
+        RootBeanDefinition refreshDefinition = new RootBeanDefinition(Timeout.class);
+        refreshDefinition.setScope(RefreshScope.SCOPE_NAME);
+        context.registerBeanDefinition("client", refreshDefinition);
+        RootBeanDefinition prototype = new RootBeanDefinition(Timeout.class);
+        prototype.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        context.registerBeanDefinition("prototype", prototype);
+        context.refresh();
+        try {
+            Timeout client = (Timeout) context.getBean("client");
+            assertEquals(1, client.timeout());
+
+            update(handler, layered, "2");
+            waitFor(() -> client.timeout() == 2);
+            // 第一次变更之后才创建的 prototype
+            Timeout created = (Timeout) context.getBean("prototype");
+            assertEquals(2, created.timeout());
+
+            // 第二次变更: 重建过的 refresh bean 和之后创建的 prototype 都能收到
+            update(handler, layered, "3");
+            waitFor(() -> client.timeout() == 3);
+            assertEquals(3, created.timeout());
+        } finally {
+            context.close();
+            handler.destroy();
+        }
+    }
+
+    private static void update(BeanPropertyChangeHandler handler, LayeredProperties layered, String timeout) throws Exception {
+        LayeredProperties.Staged staged = layered.stage(Collections.singletonList(
+                new LayeredProperties.Layer("app.properties", 0, ConfigSnapshot.of(props("http.timeout", timeout)))));
+        handler.prepare(staged);
+        handler.applyChanges(layered.commit(staged), layered);
+    }
+
+    private static Properties props(String... kvs) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kvs.length; i += 2) {
+            properties.setProperty(kvs[i], kvs[i + 1]);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,117 @@
+package io.disconf.client.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StagedApplyTest {
+
+    public static class Client {
+        @Value("${pool.size}")
+        int size = 5;
+        @Value("${app.tags}")
+        List<String> tags = Collections.singletonList("a");
+    }
+
+    public static class Task {
+        static final AtomicInteger CREATED = new AtomicInteger();
+        @Value("${task.retries}")
+        int retries;
+
+        public Task() {
+            CREATED.incrementAndGet();
+        }
+    }
+
+    private final LayeredProperties layered = new LayeredProperties();
+    private final BeanPropertyChangeHandler handler = new BeanPropertyChangeHandler();
+    private final Client client = new Client();
+
+    private static ConfigSnapshot snapshot(String... kvs) {
+        Properties properties = new Properties();
+        for (int i = 0; i < kvs.length; i += 2) {
+            properties.setProperty(kvs[i], kvs[i + 1]);
+        }
+        return ConfigSnapshot.of(properties);
+    }
+
+    private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+    @Before
+    public void setUp() throws Exception {
+        layered.putLayer("app.properties", 0, snapshot("pool.size", "5", "app.tags", "[\"a\"]"));
+        handler.setEnvironment(new StandardEnvironment());
+        handler.postProcessBeanFactory(beanFactory);
+        beanFactory.registerSingleton("client", client);
+        handler.getSuggestedValue(new DependencyDescriptor(Client.class.getDeclaredField("size"), true));
+        handler.getSuggestedValue(new DependencyDescriptor(Client.class.getDeclaredField("tags"), true));
+    }
+
+    private ConfigChangeSet update(String... kvs) throws Exception {
+        LayeredProperties.Staged staged = layered.stage(Collections.singletonList(
+                new LayeredProperties.Layer("app.properties", 0, snapshot(kvs))));
+        handler.prepare(staged);
+        return handler.applyChanges(layered.commit(staged), layered);
+    }
+
+    @Test
+    public void test_reject_before_commit() throws Exception {
+        // 类型转换失败, 整批不生效
+        try {
+            update("pool.size", "8", "app.tags", "[\"a\",");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("app.tags"));
+        }
+        assertEquals(5, client.size);
+        assertEquals("5", layered.get("pool.size"));
+
+        // 校验器拒绝
+        handler.addValidator((changes, candidate) -> {
+            if (Integer.parseInt(candidate.getProperty("pool.size")) > 100) {
+                throw new IllegalArgumentException("pool.size too large");
+            }
+        });
+        try {
+            update("pool.size", "500", "app.tags", "[\"a\"]");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("pool.size too large", e.getMessage());
+        }
+        assertEquals(5, client.size);
+
+        ConfigChangeSet applied = update("pool.size", "8", "app.tags", "[\"a\",\"b\"]");
+        assertEquals(Arrays.asList("app.tags", "pool.size"), applied.keys());
+        assertEquals(8, client.size);
+        assertEquals(Arrays.asList("a", "b"), client.tags);
+    }
+
+    @Test
+    public void test_no_instance_created_for_injection() throws Exception {
+        RootBeanDefinition definition = new RootBeanDefinition(Task.class);
+        definition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("task", definition);
+        RootBeanDefinition lazy = new RootBeanDefinition(Task.class);
+        lazy.setLazyInit(true);
+        beanFactory.registerBeanDefinition("lazyTask", lazy);
+        // 注入点已经记录, 实例都已经被回收 (这里一个也没有创建)
+        handler.getSuggestedValue(new DependencyDescriptor(Task.class.getDeclaredField("retries"), true));
+        int created = Task.CREATED.get();
+
+        update("pool.size", "5", "app.tags", "[\"a\"]", "task.retries", "3");
+        assertEquals(created, Task.CREATED.get());
+    }
+}
@@ -0,0 +1,62 @@
+package io.disconf.client.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ValueIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public static class Settings {
+        String title;
+
+        public void setSize(int size) {
+        }
+    }
+
+    @RefreshScoped
+    public static class Client {
+        String url;
+    }
+
+    @Test
+    public void test_load_and_register() throws Exception {
+        File dir = folder.newFolder();
+        File index = new File(dir, ValueIndex.LOCATION);
+        index.getParentFile().mkdirs();
+        String settings = Settings.class.getName(), client = Client.class.getName();
+        Files.write(index.toPath(), ("# generated\n"
+                + "app.title\tF\t" + settings + "\ttitle\n"
+                + "app.size\tM\t" + settings + "\tsetSize\tint\n"
+                + "app.url\tF\t" + client + "\turl\n"
+                + "app.gone\tF\tdemo.Missing\tgone\n").getBytes(StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader())) {
+            ValueIndex valueIndex = ValueIndex.load(classLoader);
+            assertFalse(valueIndex.isEmpty());
+            DependencyRegistry registry = new DependencyRegistry();
+            assertEquals(2, valueIndex.register(registry, classLoader));
+            assertEquals("title", registry.get("app.title").iterator().next().getField().getName());
+            assertEquals("setSize", registry.get("app.size").iterator().next().getMethodParameter().getMethod().getName());
+            // refresh bean 和找不到的类不登记
+            assertTrue(registry.get("app.url").isEmpty());
+            assertTrue(registry.get("app.gone").isEmpty());
+            assertTrue(valueIndex.isIndexed(Settings.class));
+            assertFalse(valueIndex.isIndexed(Client.class));
+        }
+    }
+
+    @Test
+    public void test_no_index() {
+        assertTrue(ValueIndex.load(new URLClassLoader(new URL[0], null)).isEmpty());
+    }
+}
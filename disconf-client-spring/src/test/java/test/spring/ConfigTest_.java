@@ -7,9 +7,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import test.spring.base.Configs;
+import test.spring.base.TitleClient;
+import test.spring.base.XmlSettings;
 
 import java.util.Properties;
 
+import static org.junit.Assert.assertEquals;
+
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration({"classpath:disconf.xml", "classpath:app-test.xml"})
 public class ConfigTest_ {
@@ -20,19 +24,36 @@ public class ConfigTest_ {
     @Autowired
     DisConfPropertyConfigurer disConfPropertyConfigurer;
 
+    @Autowired
+    TitleClient titleClient;
+
+    @Autowired
+    XmlSettings xmlSettings;
+
     @Test
-    public void test_config() {
+    public void test_config() throws InterruptedException {
         System.out.println("configs = " + configs);
+        assertEquals("someGame", titleClient.getTitle());
+        assertEquals("someGame", xmlSettings.getTitle());
 
         Properties properties = new Properties();
         properties.put("app.title", "myApp");
         properties.put("app.title", "myApp");
         properties.put("app.user.hobby.NewResetUser", "WriteBug");
+        properties.put("app.pool.min", "2");
+        properties.put("app.pool.max", "20");
         // when use disconf, this method is auto invoke when Config Changed
         // 当使用disconf时,这个方法是自动调用的;  由于第一个参数传的是null, 所以这里是重置
         disConfPropertyConfigurer.changeBeanProperties(null, properties);
 
         System.out.println("** After Refresh:\nconfigs = " + configs);
+        assertEquals(20, configs.pool.get().getMax());
+        assertEquals("myApp", xmlSettings.getTitle());
+        // refresh bean 在后台重建
+        for (int i = 0; i < 50 && !"myApp".equals(titleClient.getTitle()); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals("myApp", titleClient.getTitle());
     }
 
 
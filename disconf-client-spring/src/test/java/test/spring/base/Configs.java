@@ -1,5 +1,7 @@
 package test.spring.base;
 
+import io.disconf.client.core.ConfigBinding;
+import io.disconf.client.core.ConfigurationBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -14,6 +16,9 @@ public class Configs {
 
     public Map<String,String> userHobby;
 
+    @ConfigurationBean
+    public ConfigBinding<PoolSettings> pool;
+
     @Value("${app.title}")
     public void setTitle(String title) {
         this.title = title;
@@ -30,6 +35,7 @@ public class Configs {
         sb.append("tags=").append(Arrays.toString(tags));
         sb.append(", title='").append(title).append('\'');
         sb.append(", userHobby=").append(userHobby);
+        sb.append(", pool=").append(pool.get());
         sb.append('}');
         return sb.toString();
     }
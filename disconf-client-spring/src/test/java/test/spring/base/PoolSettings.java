@@ -0,0 +1,27 @@
+package test.spring.base;
+
+import io.disconf.client.core.ConfigurationBean;
+
+@ConfigurationBean(prefix = "app.pool")
+public class PoolSettings {
+    private final int min;
+    private final int max;
+
+    public PoolSettings(int min, int max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolSettings{min=" + min + ", max=" + max + '}';
+    }
+}
@@ -0,0 +1,26 @@
+package test.spring.base;
+
+import io.disconf.client.core.RefreshScoped;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+
+@Component
+@RefreshScoped
+public class TitleClient implements Closeable {
+    private final String title;
+
+    public TitleClient(@Value("${app.title}") String title) {
+        this.title = title;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public void close() {
+        System.out.println("TitleClient closed: " + title);
+    }
+}
@@ -0,0 +1,13 @@
+package test.spring.base;
+
+public class XmlSettings {
+    private String title;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+}
@@ -0,0 +1,210 @@
+package io.disconf.client.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.disconf.client.core.Compression;
+import io.disconf.client.core.ConfigDelta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * disconf conf server 的轻量替身, 只实现客户端用到的两个接口:
+ * <pre>
+ *   /api/zoo/hosts                                   -> {"status":1,"value":"zkHosts"}
+ *   /api/config/file?type=0&app=&version=&env=&key=  -> 配置文件内容
+ *   ...&baseVersion=                                  -> 认识这个版本时返回补丁, 见 {@link ConfigDelta}
+ * </pre>
+ * 请求带 Accept-Encoding 时按 gzip/zstd 压缩响应。
+ * 配置内容通过 {@link #publish} 修改, 同时写 ZK 节点触发客户端更新。
+ *
+ * @author houkangxi
+ */
+public class ConfServerStub implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+    private final EmbeddedZooKeeper zooKeeper;
+    private final Map<String, Published> files = new ConcurrentHashMap<>();
+    // 每个配置项最近发布过的版本, 用于生成补丁
+    private final Map<String, Map<String, byte[]>> history = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private final LongAdder bytesServed = new LongAdder();
+    private static final byte[] NO_PATCH = new byte[0];
+
+    public ConfServerStub(EmbeddedZooKeeper zooKeeper) throws IOException {
+        this.zooKeeper = zooKeeper;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/zoo/hosts", exchange -> {
+            count("/api/zoo/hosts");
+            String json = "{\"status\":1,\"value\":\"" + zooKeeper.getConnectString() + "\"}";
+            respond(exchange, 200, json.getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/api/config/file", exchange -> {
+            count("/api/config/file");
+            String key = query(exchange, "key");
+            Published published = key == null ? null : files.get(key);
+            if (published == null) {
+                respond(exchange, 404, new byte[0]);
+                return;
+            }
+            String baseVersion = query(exchange, ConfigDelta.BASE_VERSION_PARAM);
+            byte[] patch = baseVersion == null ? NO_PATCH : published.patches.computeIfAbsent(baseVersion, v -> {
+                byte[] base;
+                Map<String, byte[]> versions = versions(key);
+                synchronized (versions) {
+                    base = versions.get(v);
+                }
+                byte[] p = base == null ? null : ConfigDelta.createPatch(key, base, published.data);
+                return p == null ? NO_PATCH : p;
+            });
+            if (patch != NO_PATCH) {
+                count("/api/config/file#delta");
+                exchange.getResponseHeaders().set(ConfigDelta.PATCH_HEADER, ConfigDelta.patchType(key));
+                exchange.getResponseHeaders().set(ConfigDelta.VERSION_HEADER, published.version);
+                respondEncoded(exchange, patch, null);
+            } else {
+                respondEncoded(exchange, published.data, published.encoded);
+            }
+        });
+        server.start();
+    }
+
+    public String getHost() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 客户端下载配置项的 url 前缀, 后面接配置项名
+     */
+    public String configItemUrlPrefix(String app, String version, String env) {
+        return getHost() + "/api/config/file?type=0&app=" + app + "&version=" + version + "&env=" + env + "&key=";
+    }
+
+    public static String configItemNode(String app, String version, String env, String item) {
+        return String.format("/disconf/%s_%s_%s/file/%s", app, version, env, item);
+    }
+
+    /**
+     * 发布配置: 先更新文件内容, 再写 ZK 节点通知客户端
+     */
+    public void publish(String app, String version, String env, String item, byte[] content) throws Exception {
+        Published published = new Published(content, ConfigDelta.version(item, content));
+        Map<String, byte[]> versions = versions(item);
+        synchronized (versions) {
+            versions.put(published.version, content);
+        }
+        files.put(item, published);
+        zooKeeper.setData(configItemNode(app, version, env, item), content);
+    }
+
+    /**
+     * 各接口的请求次数
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> map = new TreeMap<>();
+        requestCounts.forEach((k, v) -> map.put(k, v.sum()));
+        return map;
+    }
+
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    public void resetCounts() {
+        requestCounts.clear();
+        bytesServed.reset();
+    }
+
+    private Map<String, byte[]> versions(String item) {
+        return history.computeIfAbsent(item, k -> new LinkedHashMap<String, byte[]>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > 16;
+            }
+        });
+    }
+
+    private void count(String path) {
+        requestCounts.computeIfAbsent(path, k -> new LongAdder()).increment();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesServed.add(body.length);
+    }
+
+    // 按 Accept-Encoding 压缩, 小于 1KB 的不压缩; cache 为 null 时不缓存
+    private void respondEncoded(HttpExchange exchange, byte[] body, Map<Compression, byte[]> cache) throws IOException {
+        Compression compression = Compression.NONE;
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && body.length >= 1024) {
+            for (String token : accept.split(",")) {
+                String encoding = token.split(";")[0].trim();
+                for (Compression c : Compression.values()) {
+                    if (c != Compression.NONE && c.isAvailable() && c.getEncoding().equalsIgnoreCase(encoding)) {
+                        compression = c;
+                        break;
+                    }
+                }
+                if (compression != Compression.NONE) {
+                    break;
+                }
+            }
+        }
+        byte[] raw = body;
+        if (compression != Compression.NONE) {
+            exchange.getResponseHeaders().set("Content-Encoding", compression.getEncoding());
+            body = cache == null ? compression.compress(raw) : cache.computeIfAbsent(compression, c -> c.compress(raw));
+        }
+        respond(exchange, 200, body);
+    }
+
+    static String query(HttpExchange exchange, String name) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // 当前发布的内容, 以及针对各个基准版本生成过的补丁
+    private static class Published {
+        final byte[] data;
+        final String version;
+        final Map<String, byte[]> patches = new ConcurrentHashMap<>();
+        // 压缩后的 data
+        final Map<Compression, byte[]> encoded = new ConcurrentHashMap<>();
+
+        Published(byte[] data, String version) {
+            this.data = data;
+            this.version = version;
+        }
+    }
+}
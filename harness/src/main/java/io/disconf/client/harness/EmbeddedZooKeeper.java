@@ -0,0 +1,98 @@
+package io.disconf.client.harness;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的单机 ZooKeeper, 数据目录为临时目录, 不限制单 IP 连接数。
+ *
+ * @author houkangxi
+ */
+public class EmbeddedZooKeeper implements Closeable {
+    private final File dataDir;
+    private final ZooKeeperServer server;
+    private final NIOServerCnxnFactory factory;
+    private ZooKeeper admin;
+
+    public EmbeddedZooKeeper() throws IOException, InterruptedException {
+        dataDir = Files.createTempDirectory("disconf-zk").toFile();
+        server = new ZooKeeperServer(dataDir, dataDir, 2000);
+        factory = new NIOServerCnxnFactory();
+        factory.configure(new InetSocketAddress("127.0.0.1", 0), 0);
+        factory.startup(server);
+    }
+
+    public String getConnectString() {
+        return "127.0.0.1:" + factory.getLocalPort();
+    }
+
+    /**
+     * 管理端连接, 用来模拟 disconf web 修改节点
+     */
+    public synchronized ZooKeeper admin() throws IOException, InterruptedException {
+        if (admin == null) {
+            CountDownLatch connected = new CountDownLatch(1);
+            admin = new ZooKeeper(getConnectString(), 10000, event -> connected.countDown());
+            connected.await(5, TimeUnit.SECONDS);
+        }
+        return admin;
+    }
+
+    /**
+     * 写节点数据, 不存在时连同父节点一起创建
+     */
+    public void setData(String path, byte[] data) throws IOException, InterruptedException, KeeperException {
+        ZooKeeper zk = admin();
+        if (zk.exists(path, false) == null) {
+            int i = 0;
+            while ((i = path.indexOf('/', i + 1)) > 0) {
+                createIfAbsent(zk, path.substring(0, i), new byte[0]);
+            }
+            createIfAbsent(zk, path, data);
+        }
+        zk.setData(path, data, -1);
+    }
+
+    private static void createIfAbsent(ZooKeeper zk, String path, byte[] data) throws KeeperException, InterruptedException {
+        try {
+            zk.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } catch (KeeperException.NodeExistsException e) {
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (admin != null) {
+                admin.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        factory.shutdown();
+        server.shutdown();
+        delete(dataDir);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
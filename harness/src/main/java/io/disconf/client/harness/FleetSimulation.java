@@ -0,0 +1,132 @@
+package io.disconf.client.harness;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在一个 JVM 里模拟一批客户端, 回放一串配置修改, 输出传播延迟分位数和 conf server 请求数:
+ * <pre>
+ *   java -jar target/harness.jar [clients=200] [edits=20] [intervalMs=50] [keys=1000]
+ * </pre>
+ *
+ * @author houkangxi
+ */
+public class FleetSimulation {
+    static final String APP = "harness", VERSION = "1_0", ENV = "test", ITEM = "settings.properties";
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long intervalMs = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        int keys = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        Result result = run(clients, edits, intervalMs, keys);
+        System.out.println(result);
+        System.exit(0);
+    }
+
+    /**
+     * 启动 zk + conf server + clients, 发布 edits 次修改, 每次间隔 intervalMs, 配置文件有 keys 个 key
+     */
+    public static Result run(int clients, int edits, long intervalMs, int keys) throws Exception {
+        Map<Long, Long> publishNanos = new ConcurrentHashMap<>();
+        LatencyRecorder latency = new LatencyRecorder();
+        List<SimulatedClient> fleet = new ArrayList<>(clients);
+        File root = Files.createTempDirectory("disconf-fleet").toFile();
+        try (EmbeddedZooKeeper zooKeeper = new EmbeddedZooKeeper();
+             ConfServerStub confServer = new ConfServerStub(zooKeeper)) {
+            String node = ConfServerStub.configItemNode(APP, VERSION, ENV, ITEM);
+            String url = confServer.configItemUrlPrefix(APP, VERSION, ENV) + ITEM;
+            confServer.publish(APP, VERSION, ENV, ITEM, content(0, keys));
+
+            long startupBegin = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                fleet.add(new SimulatedClient(zooKeeper.getConnectString(), Collections.singletonMap(node, url),
+                        new File(root, "client" + i), seq -> {
+                    Long published = publishNanos.get(seq);
+                    if (published != null) {
+                        latency.record(System.nanoTime() - published);
+                    }
+                }));
+            }
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startupBegin);
+            Map<String, Long> startupRequests = confServer.getRequestCounts();
+            confServer.resetCounts();
+
+            for (long seq = 1; seq <= edits; seq++) {
+                byte[] data = content(seq, keys);
+                publishNanos.put(seq, System.nanoTime());
+                confServer.publish(APP, VERSION, ENV, ITEM, data);
+                Thread.sleep(intervalMs);
+            }
+            // 等所有客户端应用最后一次修改
+            long deadline = System.currentTimeMillis() + 60000;
+            int converged;
+            while ((converged = countApplied(fleet, edits)) < clients && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            return new Result(clients, edits, converged, startupMillis, startupRequests,
+                    confServer.getRequestCounts(), confServer.getBytesServed(), latency);
+        } finally {
+            fleet.forEach(SimulatedClient::close);
+        }
+    }
+
+    private static int countApplied(List<SimulatedClient> fleet, long seq) {
+        int n = 0;
+        for (SimulatedClient client : fleet) {
+            if (client.getAppliedSeq() >= seq) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    static byte[] content(long seq, int keys) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(keys * 32);
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(SimulatedClient.SEQ_KEY).append('=').append(seq).append('\n');
+        for (int i = 0; i < keys; i++) {
+            // 每次修改只改其中一个 key
+            sb.append("app.key").append(i).append('=').append(i == seq % keys ? "edit-" + seq : "value-" + i).append('\n');
+            byte[] line = sb.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(line, 0, line.length);
+            sb.setLength(0);
+        }
+        return out.toByteArray();
+    }
+
+    public static class Result {
+        public final int clients, edits, converged;
+        public final long startupMillis, bytesServed;
+        public final Map<String, Long> startupRequests, editRequests;
+        public final LatencyRecorder latency;
+
+        Result(int clients, int edits, int converged, long startupMillis, Map<String, Long> startupRequests,
+               Map<String, Long> editRequests, long bytesServed, LatencyRecorder latency) {
+            this.clients = clients;
+            this.edits = edits;
+            this.converged = converged;
+            this.startupMillis = startupMillis;
+            this.startupRequests = startupRequests;
+            this.editRequests = editRequests;
+            this.bytesServed = bytesServed;
+            this.latency = latency;
+        }
+
+        @Override
+        public String toString() {
+            return "clients=" + clients + ", edits=" + edits + ", converged=" + converged
+                    + "\nstartup: " + startupMillis + "ms, requests=" + startupRequests
+                    + "\nedits: requests=" + editRequests + ", bytes=" + bytesServed
+                    + "\npropagation: " + latency;
+        }
+    }
+}
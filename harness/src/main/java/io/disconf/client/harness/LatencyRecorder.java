@@ -0,0 +1,48 @@
+package io.disconf.client.harness;
+
+import java.util.Arrays;
+
+/**
+ * 记录延迟样本(纳秒)并计算分位数
+ *
+ * @author houkangxi
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int size;
+
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * @param p - 0 ~ 100
+     * @return 分位数(毫秒), 没有样本时为 0
+     */
+    public synchronized double percentile(double p) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))] / 1e6;
+    }
+
+    public synchronized void reset() {
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                count(), percentile(50), percentile(90), percentile(99), percentile(100));
+    }
+}
@@ -0,0 +1,53 @@
+package io.disconf.client.harness;
+
+import io.disconf.client.core.ZookeeperWatcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * 一个模拟的客户端实例: 独立的 ZK 会话和下载目录, 不依赖 Spring 容器。
+ * 每次应用配置时读取 {@link #SEQ_KEY}, 交给 listener 计算传播延迟。
+ *
+ * @author houkangxi
+ */
+public class SimulatedClient implements Closeable {
+    public static final String SEQ_KEY = "harness.seq";
+    private final ZookeeperWatcher watcher;
+    private volatile long appliedSeq = -1;
+
+    public SimulatedClient(String zkHosts, Map<String, String> nodeUrls, File downloadDir, LongConsumer seqListener)
+            throws MalformedURLException {
+        downloadDir.mkdirs();
+        Map<String, URL> nodesResource = new HashMap<>();
+        for (Map.Entry<String, String> entry : nodeUrls.entrySet()) {
+            nodesResource.put(entry.getKey(), new URL(entry.getValue()));
+        }
+        watcher = new ZookeeperWatcher(zkHosts, nodesResource, (changes, layeredProperties) -> {
+            String seq = layeredProperties.get(SEQ_KEY);
+            if (seq != null) {
+                appliedSeq = Long.parseLong(seq);
+                seqListener.accept(appliedSeq);
+            }
+            return changes;
+        }, downloadDir.getAbsolutePath());
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    public ZookeeperWatcher getWatcher() {
+        return watcher;
+    }
+
+    @Override
+    public void close() {
+        watcher.close();
+    }
+}
@@ -0,0 +1,183 @@
+package io.disconf.client.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译时生成 &#64;Value 注入点索引 {@value #INDEX_LOCATION}, 启动时 BeanPropertyChangeHandler 直接读取,
+ * 不用在创建 bean 时逐个解析占位符。每行一个注入点, tab 分隔:
+ * <pre>
+ * key  F  类名  字段名
+ * key  M  类名  方法名  参数类型
+ * </pre>
+ * 只索引变更后能重新注入的字段和单参数方法, 构造方法和 &#64;Bean 方法的参数不索引。
+ * 增量编译只会包含本次编译的类, 需要完整编译。
+ *
+ * @author houkangxi
+ */
+@SupportedAnnotationTypes(ValueIndexProcessor.VALUE_ANNOTATION)
+public class ValueIndexProcessor extends AbstractProcessor {
+    public static final String INDEX_LOCATION = "META-INF/disconf/value.index";
+    static final String VALUE_ANNOTATION = "org.springframework.beans.factory.annotation.Value";
+    private static final String BEAN_ANNOTATION = "org.springframework.context.annotation.Bean";
+
+    // 排序后输出, 同样的源码生成同样的文件
+    private final Set<String> lines = new TreeSet<>();
+    private final List<Element> origins = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!lines.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                String value = valueOf(element);
+                if (value != null) {
+                    index(element, value);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void index(Element element, String value) {
+        String point;
+        if (element.getKind() == ElementKind.FIELD) {
+            point = "F\t" + ownerName(element) + '\t' + element.getSimpleName();
+        } else {
+            ExecutableElement method = element instanceof ExecutableElement ? (ExecutableElement) element
+                    : element.getEnclosingElement() instanceof ExecutableElement ? (ExecutableElement) element.getEnclosingElement() : null;
+            if (method == null || method.getKind() != ElementKind.METHOD || method.getParameters().size() != 1
+                    || hasAnnotation(method, BEAN_ANNOTATION)) {
+                return;
+            }
+            point = "M\t" + ownerName(method) + '\t' + method.getSimpleName() + '\t' + typeName(method.getParameters().get(0).asType());
+        }
+        for (String key : placeholderKeys(value)) {
+            lines.add(key + '\t' + point);
+        }
+        origins.add(element);
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION,
+                    origins.toArray(new Element[0]));
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# generated by " + ValueIndexProcessor.class.getName() + "\n");
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Fail to write " + INDEX_LOCATION + ": " + e);
+        }
+    }
+
+    private static String valueOf(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(VALUE_ANNOTATION)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : mirror.getElementValues().entrySet()) {
+                    if (e.getKey().getSimpleName().contentEquals("value")) {
+                        Object value = e.getValue().getValue();
+                        return value instanceof String ? (String) value : null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String ownerName(Element member) {
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) member.getEnclosingElement()).toString();
+    }
+
+    // Class.forName 能识别的名字, 数组为 xxx[]
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+        if (erased.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) processingEnv.getTypeUtils().asElement(erased)).toString();
+        }
+        return erased.toString();
+    }
+
+    /**
+     * 表达式里所有 ${...} 的 key, 包括嵌套在默认值里的, 去掉 :默认值; key 本身含占位符的跳过
+     */
+    static Set<String> placeholderKeys(String value) {
+        Set<String> keys = new LinkedHashSet<>();
+        collectKeys(value, keys);
+        return keys;
+    }
+
+    private static void collectKeys(String value, Set<String> keys) {
+        int from = 0, start;
+        while ((start = value.indexOf("${", from)) >= 0) {
+            int end = findEnd(value, start + 2);
+            if (end < 0) {
+                return;
+            }
+            String placeholder = value.substring(start + 2, end);
+            collectKeys(placeholder, keys);
+            int separator = placeholder.indexOf(':');
+            String key = separator < 0 ? placeholder : placeholder.substring(0, separator);
+            if (!key.isEmpty() && !key.contains("${")) {
+                keys.add(key);
+            }
+            from = end + 1;
+        }
+    }
+
+    private static int findEnd(String value, int from) {
+        int depth = 0;
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '$' && i + 1 < value.length() && value.charAt(i + 1) == '{') {
+                depth++;
+                i++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+}
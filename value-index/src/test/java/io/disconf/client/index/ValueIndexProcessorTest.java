@@ -0,0 +1,73 @@
+package io.disconf.client.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ValueIndexProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    @Test
+    public void test_index() throws Exception {
+        String code = "package demo;\n"
+                + "import org.springframework.beans.factory.annotation.Value;\n"
+                + "public class Settings {\n"
+                + "    @Value(\"${app.title:${app.name}}\") String title;\n"
+                + "    @Value(\"${app.tags}\") String[] tags;\n"
+                + "    public Settings(@Value(\"${app.ctor}\") String ctor) {}\n"
+                + "    @Value(\"${app.size}\") public void setSize(int size) {}\n"
+                + "    public void setLimit(@Value(\"${app.limit}\") java.util.List<String> limit) {}\n"
+                + "    public void setBoth(@Value(\"${a}\") String a, @Value(\"${b}\") String b) {}\n"
+                + "    public static class Inner { @Value(\"jdbc:${db.host}/${db.name}\") String url; }\n"
+                + "}\n";
+        File out = folder.newFolder("classes");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = Arrays.asList("-d", out.getPath(), "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null,
+                Collections.singletonList(source("demo.Settings", code)));
+        task.setProcessors(Collections.singletonList(new ValueIndexProcessor()));
+        assertTrue(task.call());
+
+        List<String> lines = Files.readAllLines(new File(out, ValueIndexProcessor.INDEX_LOCATION).toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("#"));
+        assertEquals(Arrays.asList(
+                "app.limit\tM\tdemo.Settings\tsetLimit\tjava.util.List",
+                "app.name\tF\tdemo.Settings\ttitle",
+                "app.size\tM\tdemo.Settings\tsetSize\tint",
+                "app.tags\tF\tdemo.Settings\ttags",
+                "app.title\tF\tdemo.Settings\ttitle",
+                "db.host\tF\tdemo.Settings$Inner\turl",
+                "db.name\tF\tdemo.Settings$Inner\turl"
+        ), lines.subList(1, lines.size()));
+    }
+
+    @Test
+    public void test_placeholder_keys() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("b", "a")), ValueIndexProcessor.placeholderKeys("${a:${b}}"));
+        assertEquals(Collections.singleton("env"), ValueIndexProcessor.placeholderKeys("${${env}.url}"));
+        assertEquals(Collections.singleton("x"), ValueIndexProcessor.placeholderKeys("#{1}${x:a:b}"));
+        assertTrue(ValueIndexProcessor.placeholderKeys("plain ${unclosed").isEmpty());
+    }
+}